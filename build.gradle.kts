@@ -1,5 +1,6 @@
 plugins {
     id("java")
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "net.raschp"
@@ -12,8 +13,15 @@ repositories {
 dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter-api:5.8.1")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.8.1")
+    jmh("org.openjdk.jmh:jmh-core:1.37")
+    jmh("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 tasks.getByName<Test>("test") {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+
+jmh {
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
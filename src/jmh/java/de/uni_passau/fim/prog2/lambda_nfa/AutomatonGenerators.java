@@ -0,0 +1,164 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generators for synthetic automata and words used by the benchmarks. All
+ * generators are deterministic for a given seed.
+ */
+public final class AutomatonGenerators {
+
+    /**
+     * The families of automata the generators can produce.
+     */
+    public enum Shape {
+        /**
+         * Random automaton with two letter transitions per state and a few
+         * lambda transitions.
+         */
+        SPARSE,
+        /**
+         * Long chain of letter and lambda transitions closed into a lambda
+         * cycle, like the automaton of {@code GENERATE} in the shell.
+         */
+        LAMBDA_CYCLE,
+        /**
+         * The language {@code (a|b)*a(a|b)^k}, whose minimal deterministic
+         * automaton has {@code 2^(k+1)} states.
+         */
+        WORST_CASE,
+        /**
+         * Random automaton where every state has transitions to a quarter of
+         * all states for each symbol.
+         */
+        DENSE
+    }
+
+    private AutomatonGenerators() throws InstantiationException {
+        throw new InstantiationException(
+                "AutomatonGenerators may not be instantiated.");
+    }
+
+    /**
+     * Generates the transitions of an automaton. Every transition is stored
+     * as three consecutive entries: source, target and symbol.
+     *
+     * @param shape The family of the automaton.
+     * @param size  The number of states.
+     * @param seed  The seed for random choices.
+     * @return The transitions of the automaton.
+     */
+    static int[] transitions(Shape shape, int size, long seed) {
+        Random random = new Random(seed);
+        List<Integer> edges = new ArrayList<>();
+        switch (shape) {
+            case SPARSE -> {
+                for (int i = 1; i <= size; i++) {
+                    add(edges, i, 1 + random.nextInt(size), 'a');
+                    add(edges, i, 1 + random.nextInt(size), 'b');
+                    if (random.nextInt(10) == 0) {
+                        add(edges, i, 1 + random.nextInt(size), '~');
+                    }
+                }
+            }
+            case LAMBDA_CYCLE -> {
+                for (int i = 1; i < size; i++) {
+                    add(edges, i, i + 1, i % 2 == 0 ? '~' : 'a');
+                    add(edges, i, i, '~');
+                    if (i % 3 == 0) {
+                        add(edges, i, i + 1, 'b');
+                    }
+                }
+                add(edges, size, 1, '~');
+            }
+            case WORST_CASE -> {
+                add(edges, 1, 1, 'a');
+                add(edges, 1, 1, 'b');
+                add(edges, 1, 2, 'a');
+                for (int i = 2; i < size; i++) {
+                    add(edges, i, i + 1, 'a');
+                    add(edges, i, i + 1, 'b');
+                }
+            }
+            case DENSE -> {
+                for (int i = 1; i <= size; i++) {
+                    for (int j = 0; j < Math.max(1, size / 4); j++) {
+                        add(edges, i, 1 + random.nextInt(size), 'a');
+                        add(edges, i, 1 + random.nextInt(size), 'b');
+                    }
+                }
+            }
+            default -> throw new IllegalArgumentException(
+                    "Unknown shape " + shape);
+        }
+        int[] result = new int[edges.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = edges.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Creates an automaton with state 1 as starting state and the last state
+     * as its only final state, and adds the given transitions.
+     *
+     * @param size        The number of states.
+     * @param transitions The transitions as generated by
+     *                    {@link #transitions(Shape, int, long)}.
+     * @return The automaton.
+     */
+    static LambdaNFA build(int size, int[] transitions) {
+        LambdaNFA nfa = new LambdaNFA(size, 1, List.of(size));
+        for (int i = 0; i < transitions.length; i += 3) {
+            nfa.addTransition(transitions[i], transitions[i + 1],
+                    (char) transitions[i + 2]);
+        }
+        return nfa;
+    }
+
+    /**
+     * Creates a concurrent automaton like {@link #build(int, int[])}, adding
+     * all transitions in a single batch.
+     *
+     * @param size        The number of states.
+     * @param transitions The transitions as generated by
+     *                    {@link #transitions(Shape, int, long)}.
+     * @return The automaton.
+     */
+    static ConcurrentLambdaNFA buildConcurrent(int size, int[] transitions) {
+        ConcurrentLambdaNFA nfa =
+                new ConcurrentLambdaNFA(size, 1, List.of(size));
+        ConcurrentLambdaNFA.Batch batch = nfa.batch();
+        for (int i = 0; i < transitions.length; i += 3) {
+            batch.addTransition(transitions[i], transitions[i + 1],
+                    (char) transitions[i + 2]);
+        }
+        batch.publish();
+        return nfa;
+    }
+
+    /**
+     * Generates a random word over the symbols {@code a} and {@code b}.
+     *
+     * @param length The length of the word.
+     * @param seed   The seed for random choices.
+     * @return The word.
+     */
+    static String word(int length, long seed) {
+        Random random = new Random(seed);
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = random.nextBoolean() ? 'a' : 'b';
+        }
+        return new String(word);
+    }
+
+    private static void add(List<Integer> edges, int source, int target,
+                            char symbol) {
+        edges.add(source);
+        edges.add(target);
+        edges.add((int) symbol);
+    }
+}
@@ -0,0 +1,93 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import de.uni_passau.fim.prog2.lambda_nfa.AutomatonGenerators.Shape;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ConcurrentLambdaNFA} with many reader threads and one
+ * writer thread. The writer only adds transitions over {@code c}, which
+ * never occurs in the word, so every snapshot has to give the same answer
+ * while readers keep querying freshly published snapshots. That batches
+ * are published atomically is tested by {@code ConcurrentLambdaNFATest}.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrencyBenchmark {
+    @Param({"SPARSE", "LAMBDA_CYCLE"})
+    private Shape shape;
+
+    @Param({"256", "4096"})
+    private int size;
+
+    @Param({"1000"})
+    private int wordLength;
+
+    private ConcurrentLambdaNFA nfa;
+    private String word;
+    private String expected;
+
+    /**
+     * Rebuilds the automaton, so the rows written during an iteration do
+     * not accumulate over the whole run.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        this.nfa = AutomatonGenerators.buildConcurrent(this.size,
+                AutomatonGenerators.transitions(this.shape, this.size, 42));
+        this.word = AutomatonGenerators.word(this.wordLength, 4711);
+        this.expected = this.nfa.longestPrefix(this.word);
+    }
+
+    /**
+     * Benchmarks {@link ConcurrentLambdaNFA#longestPrefix(String)} while
+     * the writer publishes new snapshots.
+     *
+     * @return The longest prefix, to prevent dead code elimination.
+     */
+    @Benchmark
+    @Group("serve")
+    @GroupThreads(7)
+    public String reader() {
+        String prefix = this.nfa.longestPrefix(this.word);
+        if (!Objects.equals(prefix, this.expected)) {
+            throw new IllegalStateException("Snapshot answered " + prefix
+                    + " instead of " + this.expected + ".");
+        }
+        return prefix;
+    }
+
+    /**
+     * Benchmarks publishing a single transition while readers query the
+     * automaton.
+     *
+     * @return The published snapshot, to prevent dead code elimination.
+     */
+    @Benchmark
+    @Group("serve")
+    @GroupThreads(1)
+    public ConcurrentLambdaNFA.Snapshot writer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return this.nfa.batch().addTransition(1 + random.nextInt(this.size),
+                1 + random.nextInt(this.size), 'c').publish();
+    }
+}
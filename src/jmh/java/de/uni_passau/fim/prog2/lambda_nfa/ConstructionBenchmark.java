@@ -0,0 +1,92 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import de.uni_passau.fim.prog2.lambda_nfa.AutomatonGenerators.Shape;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building generated automata transition by transition, the
+ * precomputation of lambda closures and the string representation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstructionBenchmark {
+    @Param({"SPARSE", "LAMBDA_CYCLE", "WORST_CASE", "DENSE"})
+    private Shape shape;
+
+    @Param({"16", "256", "1024"})
+    private int size;
+
+    private int[] transitions;
+    private LambdaNFA nfa;
+
+    /**
+     * Generates the transitions and builds the automaton once.
+     */
+    @Setup
+    public void setUp() {
+        this.transitions =
+                AutomatonGenerators.transitions(this.shape, this.size, 42);
+        this.nfa = AutomatonGenerators.build(this.size, this.transitions);
+    }
+
+    /**
+     * Benchmarks building the automaton with
+     * {@link LambdaNFA#addTransition(int, int, char)}.
+     *
+     * @return The automaton, to prevent dead code elimination.
+     */
+    @Benchmark
+    public LambdaNFA addTransition() {
+        return AutomatonGenerators.build(this.size, this.transitions);
+    }
+
+    /**
+     * Benchmarks recomputing the nextSets of all states one by one.
+     *
+     * @return The automaton, to prevent dead code elimination.
+     */
+    @Benchmark
+    public LambdaNFA precomputeNextSet() {
+        for (int i = 1; i <= this.size; i++) {
+            this.nfa.getState(i).precomputeNextSet();
+        }
+        return this.nfa;
+    }
+
+    /**
+     * Benchmarks recomputing the lambda closures of all states in one pass
+     * over the strongly connected components.
+     *
+     * @return The automaton, to prevent dead code elimination.
+     */
+    @Benchmark
+    public LambdaNFA recomputeClosures() {
+        this.nfa.recomputeClosures();
+        return this.nfa;
+    }
+
+    /**
+     * Benchmarks {@link LambdaNFA#toString()}.
+     *
+     * @return The string representation.
+     */
+    @Benchmark
+    public String display() {
+        return this.nfa.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import de.uni_passau.fim.prog2.lambda_nfa.AutomatonGenerators.Shape;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the antichain based inclusion check with running the subset
+ * construction of both automata side by side. Every generated automaton is
+ * checked against its lambda-free version, so both checks have to explore
+ * the whole search space.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InclusionBenchmark {
+    @Param({"SPARSE", "LAMBDA_CYCLE", "WORST_CASE"})
+    private Shape shape;
+
+    @Param({"8", "12", "16"})
+    private int size;
+
+    private LambdaNFA nfa;
+    private LambdaNFA lambdaFree;
+
+    /**
+     * Generates the automaton and eliminates its lambda transitions.
+     */
+    @Setup
+    public void setUp() {
+        this.nfa = AutomatonGenerators.build(this.size,
+                AutomatonGenerators.transitions(this.shape, this.size, 42));
+        this.lambdaFree = this.nfa.eliminateLambdas();
+    }
+
+    /**
+     * Benchmarks {@link LambdaNFA#includes(LambdaNFA)}.
+     *
+     * @return The result of the check, to prevent dead code elimination.
+     */
+    @Benchmark
+    public boolean antichains() {
+        return this.nfa.includes(this.lambdaFree);
+    }
+
+    /**
+     * Benchmarks the same check without antichains.
+     *
+     * @return The counterexample, to prevent dead code elimination.
+     */
+    @Benchmark
+    public String subsets() {
+        return LanguageInclusion.counterexampleBySubsets(this.lambdaFree,
+                this.nfa);
+    }
+}
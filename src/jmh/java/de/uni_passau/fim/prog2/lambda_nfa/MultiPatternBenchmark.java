@@ -0,0 +1,83 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import de.uni_passau.fim.prog2.lambda_nfa.AutomatonGenerators.Shape;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares reading a word once for many patterns combined into a
+ * {@link MultiAutomaton} with querying every pattern on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiPatternBenchmark {
+    @Param({"SPARSE", "WORST_CASE"})
+    private Shape shape;
+
+    @Param({"10", "100", "1000"})
+    private int patternCount;
+
+    @Param({"100", "10000"})
+    private int wordLength;
+
+    private List<LambdaNFA> patterns;
+    private MultiAutomaton combined;
+    private String word;
+
+    /**
+     * Generates the patterns, each with its own seed, and combines them.
+     */
+    @Setup
+    public void setUp() {
+        this.patterns = new ArrayList<>();
+        for (int k = 0; k < this.patternCount; k++) {
+            this.patterns.add(AutomatonGenerators.build(16,
+                    AutomatonGenerators.transitions(this.shape, 16, k)));
+        }
+        this.combined = MultiAutomaton.of(this.patterns);
+        this.word = AutomatonGenerators.word(this.wordLength, 4711);
+    }
+
+    /**
+     * Benchmarks {@link MultiAutomaton#match(CharSequence)}.
+     *
+     * @return The result, to prevent dead code elimination.
+     */
+    @Benchmark
+    public MultiAutomaton.Result combined() {
+        return this.combined.match(this.word);
+    }
+
+    /**
+     * Benchmarks {@link LambdaNFA#longestPrefix(String)} on every pattern.
+     *
+     * @return The number of patterns with an accepted prefix, to prevent
+     * dead code elimination.
+     */
+    @Benchmark
+    public int separate() {
+        int count = 0;
+        for (LambdaNFA pattern : this.patterns) {
+            if (pattern.longestPrefix(this.word) != null) {
+                ++count;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,95 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import de.uni_passau.fim.prog2.lambda_nfa.AutomatonGenerators.Shape;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of membership and prefix queries on generated
+ * automata. Run with {@code -prof gc} to see the allocation per query,
+ * which is zero for the reused {@link Matcher}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+    @Param({"SPARSE", "LAMBDA_CYCLE", "WORST_CASE", "DENSE"})
+    private Shape shape;
+
+    @Param({"16", "256"})
+    private int size;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int wordLength;
+
+    private LambdaNFA nfa;
+    private Matcher matcher;
+    private String word;
+
+    /**
+     * Generates the automaton and the word.
+     */
+    @Setup
+    public void setUp() {
+        this.nfa = AutomatonGenerators.build(this.size,
+                AutomatonGenerators.transitions(this.shape, this.size, 42));
+        this.matcher = this.nfa.matcher();
+        this.word = AutomatonGenerators.word(this.wordLength, 4711);
+    }
+
+    /**
+     * Benchmarks {@link LambdaNFA#longestPrefix(String)}.
+     *
+     * @return The longest prefix, to prevent dead code elimination.
+     */
+    @Benchmark
+    public String longestPrefix() {
+        return this.nfa.longestPrefix(this.word);
+    }
+
+    /**
+     * Benchmarks {@link LambdaNFA#isElement(String)}.
+     *
+     * @return The result of the query, to prevent dead code elimination.
+     */
+    @Benchmark
+    public boolean isElement() {
+        return this.nfa.isElement(this.word);
+    }
+
+    /**
+     * Benchmarks {@link Matcher#longestPrefixLength(CharSequence)} on a
+     * matcher reused across invocations.
+     *
+     * @return The length of the longest prefix, to prevent dead code
+     * elimination.
+     */
+    @Benchmark
+    public int matcherLongestPrefixLength() {
+        return this.matcher.longestPrefixLength(this.word);
+    }
+
+    /**
+     * Benchmarks {@link Matcher#matches(CharSequence)} on a matcher reused
+     * across invocations.
+     *
+     * @return The result of the query, to prevent dead code elimination.
+     */
+    @Benchmark
+    public boolean matcherMatches() {
+        return this.matcher.matches(this.word);
+    }
+}
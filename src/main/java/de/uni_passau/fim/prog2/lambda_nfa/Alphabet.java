@@ -0,0 +1,140 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.Arrays;
+
+/**
+ * An immutable alphabet, given as a union of character ranges. The ranges
+ * are kept sorted and disjoint, so membership is decided by binary search.
+ */
+public final class Alphabet {
+    /**
+     * The default alphabet, ranging from {@link Automaton#FIRST_SYMBOL} to
+     * {@link Automaton#LAST_SYMBOL}.
+     */
+    public static final Alphabet DEFAULT =
+            range(Automaton.FIRST_SYMBOL, Automaton.LAST_SYMBOL);
+
+    /**
+     * The alphabet of all characters except
+     * {@link LambdaNFA#LAMBDA_SYMBOL}.
+     */
+    public static final Alphabet UNICODE =
+            range(Character.MIN_VALUE, (char) (LambdaNFA.LAMBDA_SYMBOL - 1))
+                    .union(range((char) (LambdaNFA.LAMBDA_SYMBOL + 1),
+                            Character.MAX_VALUE));
+
+    private final char[] firsts;
+    private final char[] lasts;
+
+    private Alphabet(char[] firsts, char[] lasts) {
+        this.firsts = firsts;
+        this.lasts = lasts;
+    }
+
+    /**
+     * Creates an alphabet consisting of a single continuous range.
+     *
+     * @param first The first character of the range.
+     * @param last  The last character of the range, inclusive.
+     * @return The alphabet.
+     * @throws IllegalArgumentException If {@code first} is greater than
+     *                                  {@code last}.
+     */
+    public static Alphabet range(char first, char last) {
+        if (first > last) {
+            throw new IllegalArgumentException("Empty range " + first + "-"
+                    + last + ".");
+        }
+        return new Alphabet(new char[]{first}, new char[]{last});
+    }
+
+    /**
+     * Creates the union of this and another alphabet.
+     *
+     * @param other The other alphabet.
+     * @return An alphabet containing all characters of both alphabets.
+     */
+    public Alphabet union(Alphabet other) {
+        int count = this.firsts.length + other.firsts.length;
+        long[] ranges = new long[count];
+        for (int i = 0; i < this.firsts.length; i++) {
+            ranges[i] = (long) this.firsts[i] << 16 | this.lasts[i];
+        }
+        for (int i = 0; i < other.firsts.length; i++) {
+            ranges[this.firsts.length + i] =
+                    (long) other.firsts[i] << 16 | other.lasts[i];
+        }
+        Arrays.sort(ranges);
+        char[] firsts = new char[count];
+        char[] lasts = new char[count];
+        int size = 0;
+        for (long range : ranges) {
+            char first = (char) (range >>> 16);
+            char last = (char) range;
+            if (size > 0 && first <= lasts[size - 1] + 1) {
+                lasts[size - 1] = (char) Math.max(lasts[size - 1], last);
+            } else {
+                firsts[size] = first;
+                lasts[size] = last;
+                ++size;
+            }
+        }
+        return new Alphabet(Arrays.copyOf(firsts, size),
+                Arrays.copyOf(lasts, size));
+    }
+
+    /**
+     * Checks whether a character is part of the alphabet.
+     *
+     * @param symbol The character to check.
+     * @return {@code true} if and only if {@code symbol} is in the alphabet.
+     */
+    public boolean contains(char symbol) {
+        int index = rangeOf(symbol);
+        return index >= 0 && symbol <= this.lasts[index];
+    }
+
+    /**
+     * Checks whether all characters of a range are part of the alphabet.
+     *
+     * @param first The first character of the range.
+     * @param last  The last character of the range, inclusive.
+     * @return {@code true} if and only if the range is not empty and all of
+     * its characters are in the alphabet.
+     */
+    public boolean contains(char first, char last) {
+        int index = rangeOf(first);
+        return first <= last && index >= 0 && last <= this.lasts[index];
+    }
+
+    /**
+     * Generates a string representation of the alphabet.
+     *
+     * @return The ranges of the alphabet, e.g. {@code [a-z0-9]}.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < this.firsts.length; i++) {
+            sb.append(this.firsts[i]);
+            if (this.lasts[i] != this.firsts[i]) {
+                sb.append('-').append(this.lasts[i]);
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    private int rangeOf(char symbol) {
+        int low = 0;
+        int high = this.firsts.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (this.firsts[middle] <= symbol) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+}
@@ -0,0 +1,36 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+/**
+ * Collects the states and transitions of an automaton before it is created,
+ * so {@link EdgeListFormat} can fill builders of different representations
+ * with the same parser.
+ */
+interface AutomatonBuilder {
+    /**
+     * Adds a state to the set of starting states.
+     *
+     * @param state The number of the state.
+     * @return This builder.
+     */
+    AutomatonBuilder addStartingState(int state);
+
+    /**
+     * Adds a state to the set of final states.
+     *
+     * @param state The number of the state.
+     * @return This builder.
+     */
+    AutomatonBuilder addEndState(int state);
+
+    /**
+     * Adds a single transition over a range of symbols.
+     *
+     * @param source The source state.
+     * @param target The target state.
+     * @param first  The first symbol of the range.
+     * @param last   The last symbol of the range, inclusive.
+     * @return This builder.
+     */
+    AutomatonBuilder addTransition(int source, int target, char first,
+                                   char last);
+}
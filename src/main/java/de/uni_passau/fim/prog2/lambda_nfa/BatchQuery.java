@@ -0,0 +1,57 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Fork/join task answering a batch of independent queries in parallel. The
+ * index range of the batch is split until the parts are small enough to
+ * give every worker thread several tasks.
+ */
+final class BatchQuery extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private static final int TASKS_PER_THREAD = 8;
+
+    private final int from;
+    private final int to;
+    private final int threshold;
+    private final transient IntConsumer query;
+
+    private BatchQuery(int from, int to, int threshold, IntConsumer query) {
+        this.from = from;
+        this.to = to;
+        this.threshold = threshold;
+        this.query = query;
+    }
+
+    /**
+     * Runs {@code query} for all indices from {@code 0} to {@code size - 1}
+     * on the common fork/join pool and waits for all of them to finish. The
+     * queries must be independent of each other.
+     *
+     * @param size  The number of queries.
+     * @param query The query to run, given the index inside the batch.
+     */
+    static void run(int size, IntConsumer query) {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int threshold = Math.max(1, size / (parallelism * TASKS_PER_THREAD));
+        ForkJoinPool.commonPool().invoke(
+                new BatchQuery(0, size, threshold, query));
+    }
+
+    @Override
+    protected void compute() {
+        if (this.to - this.from <= this.threshold) {
+            for (int i = this.from; i < this.to; i++) {
+                this.query.accept(i);
+            }
+        } else {
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new BatchQuery(this.from, middle, this.threshold,
+                            this.query),
+                    new BatchQuery(middle, this.to, this.threshold,
+                            this.query));
+        }
+    }
+}
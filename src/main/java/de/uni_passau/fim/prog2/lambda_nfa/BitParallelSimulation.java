@@ -0,0 +1,186 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.BitSet;
+
+/**
+ * Simulation engine for automata with at most {@value #MAX_STATES} states.
+ * The set of active states is kept in two {@code long}s, state {@code s}
+ * being bit {@code s - 1}. For every symbol class and state, the successors
+ * are precomputed as a mask which already contains their lambda closures
+ * and only live states. Reading a symbol is then one table lookup and two
+ * ORs per active state, without allocating. Immutable; has to be rebuilt
+ * whenever the automaton changes.
+ */
+final class BitParallelSimulation {
+    /**
+     * The largest number of states the engine supports.
+     */
+    static final int MAX_STATES = 128;
+
+    private final SymbolClasses classes;
+    private final int stateCount;
+    private final long[] masks;
+    private final long startLow;
+    private final long startHigh;
+    private final long finalLow;
+    private final long finalHigh;
+
+    private BitParallelSimulation(SymbolClasses classes, int stateCount,
+                                  long[] masks, long[] start,
+                                  long[] finals) {
+        this.classes = classes;
+        this.stateCount = stateCount;
+        this.masks = masks;
+        this.startLow = start[0];
+        this.startHigh = start[1];
+        this.finalLow = finals[0];
+        this.finalHigh = finals[1];
+    }
+
+    /**
+     * Precomputes the masks of an automaton.
+     *
+     * @param states         The states of the automaton, indexed by number.
+     *                       Their lambda closures have to be up to date.
+     * @param startingStates The numbers of all states where the simulation
+     *                       starts.
+     * @param endStates      The numbers of all final states.
+     * @param liveStates     The numbers of all states from which a final
+     *                       state can be reached.
+     * @return The engine, or {@code null} if the automaton has more than
+     * {@link #MAX_STATES} states.
+     */
+    static BitParallelSimulation of(State[] states, BitSet startingStates,
+                                    BitSet endStates, BitSet liveStates) {
+        int n = states.length - 1;
+        if (n > MAX_STATES) {
+            return null;
+        }
+        SymbolClasses classes = SymbolClasses.of(states);
+        long[] closures = new long[2 * states.length];
+        for (int s = 1; s <= n; s++) {
+            BitSet closure = states[s].getClosure();
+            if (closure == null) {
+                set(closures, 2 * s, s);
+            } else {
+                for (int t = closure.nextSetBit(0); t >= 0;
+                     t = closure.nextSetBit(t + 1)) {
+                    set(closures, 2 * s, t);
+                }
+            }
+        }
+        long[] live = mask(liveStates);
+        long[] masks = new long[2 * classes.count() * states.length];
+        for (int c = 1; c < classes.count(); c++) {
+            char symbol = classes.representative(c);
+            for (int s = 1; s <= n; s++) {
+                int index = 2 * (c * states.length + s);
+                for (Transition t : states[s].getTransitions(symbol)) {
+                    int target = t.getTarget().getNumber();
+                    masks[index] |= closures[2 * target];
+                    masks[index + 1] |= closures[2 * target + 1];
+                }
+                masks[index] &= live[0];
+                masks[index + 1] &= live[1];
+            }
+        }
+        long[] start = new long[2];
+        for (int s = startingStates.nextSetBit(0); s >= 0;
+             s = startingStates.nextSetBit(s + 1)) {
+            start[0] |= closures[2 * s];
+            start[1] |= closures[2 * s + 1];
+        }
+        start[0] &= live[0];
+        start[1] &= live[1];
+        return new BitParallelSimulation(classes, n, masks, start,
+                mask(endStates));
+    }
+
+    /**
+     * Computes the length of the longest prefix of {@code word} accepted by
+     * the automaton.
+     *
+     * @param word The word whose prefixes will be checked.
+     * @return The length of the longest accepted prefix, or {@code -1} if
+     * there is none.
+     */
+    int longestPrefixLength(CharSequence word) {
+        long low = this.startLow;
+        long high = this.startHigh;
+        int length = isAccepting(low, high) ? 0 : -1;
+        int row = this.stateCount + 1;
+        for (int i = 0; i < word.length() && (low | high) != 0; i++) {
+            int base = 2 * row * this.classes.classOf(word.charAt(i));
+            long nextLow = 0;
+            long nextHigh = 0;
+            for (long bits = low; bits != 0; bits &= bits - 1) {
+                int index = base + 2 * (Long.numberOfTrailingZeros(bits) + 1);
+                nextLow |= this.masks[index];
+                nextHigh |= this.masks[index + 1];
+            }
+            for (long bits = high; bits != 0; bits &= bits - 1) {
+                int index = base
+                        + 2 * (Long.numberOfTrailingZeros(bits) + 65);
+                nextLow |= this.masks[index];
+                nextHigh |= this.masks[index + 1];
+            }
+            low = nextLow;
+            high = nextHigh;
+            if (isAccepting(low, high)) {
+                length = i + 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Decides whether the automaton accepts {@code word} as a whole.
+     *
+     * @param word The word to check.
+     * @return {@code true} if and only if {@code word} is accepted.
+     */
+    boolean accepts(CharSequence word) {
+        long low = this.startLow;
+        long high = this.startHigh;
+        int row = this.stateCount + 1;
+        for (int i = 0; i < word.length(); i++) {
+            if ((low | high) == 0) {
+                return false;
+            }
+            int base = 2 * row * this.classes.classOf(word.charAt(i));
+            long nextLow = 0;
+            long nextHigh = 0;
+            for (long bits = low; bits != 0; bits &= bits - 1) {
+                int index = base + 2 * (Long.numberOfTrailingZeros(bits) + 1);
+                nextLow |= this.masks[index];
+                nextHigh |= this.masks[index + 1];
+            }
+            for (long bits = high; bits != 0; bits &= bits - 1) {
+                int index = base
+                        + 2 * (Long.numberOfTrailingZeros(bits) + 65);
+                nextLow |= this.masks[index];
+                nextHigh |= this.masks[index + 1];
+            }
+            low = nextLow;
+            high = nextHigh;
+        }
+        return isAccepting(low, high);
+    }
+
+    private boolean isAccepting(long low, long high) {
+        return (low & this.finalLow) != 0 || (high & this.finalHigh) != 0;
+    }
+
+    private static long[] mask(BitSet states) {
+        long[] mask = new long[2];
+        for (int s = states.nextSetBit(1); s >= 0 && s <= MAX_STATES;
+             s = states.nextSetBit(s + 1)) {
+            set(mask, 0, s);
+        }
+        return mask;
+    }
+
+    private static void set(long[] masks, int offset, int state) {
+        masks[offset + ((state - 1) >>> 6)] |= 1L << (state - 1);
+    }
+}
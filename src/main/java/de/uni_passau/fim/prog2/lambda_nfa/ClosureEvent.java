@@ -0,0 +1,27 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a computation or update of lambda closures.
+ * Only emitted while {@link Statistics} are enabled.
+ */
+@Name("de.uni_passau.fim.prog2.lambda_nfa.Closure")
+@Label("Lambda NFA Closure")
+@Category("Lambda NFA")
+@Description("Computation or incremental update of lambda closures")
+final class ClosureEvent extends Event {
+    @Label("Kind")
+    @Description("all, state or update")
+    String kind;
+
+    @Label("State Count")
+    @Description("States of the automaton, or of the closure for kind state")
+    int stateCount;
+
+    transient long startNanos;
+}
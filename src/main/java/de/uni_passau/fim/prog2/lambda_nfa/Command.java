@@ -0,0 +1,365 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single line of input to the {@link Shell} or the {@link Server}, parsed
+ * and with its arguments checked. Checks which depend on the current
+ * automaton are left to the caller, which reports them with the messages
+ * defined here, so both front ends accept the same commands and report the
+ * same errors. Error messages lack the {@code Error! } prefix the front ends
+ * print before them.
+ */
+final class Command {
+    /**
+     * The message reported if a command needs an automaton, but none has
+     * been created or loaded.
+     */
+    static final String NOT_INITIALIZED = "NFA has not been initialized.";
+
+    /**
+     * The message reported if ADD names a transition the automaton rejects.
+     */
+    static final String INVALID_TRANSITION = "Transition provided is not"
+            + " valid.";
+
+    /**
+     * The message reported if ADD is applied to a loaded automaton.
+     */
+    static final String NOT_MODIFIABLE = "Loaded automata cannot be"
+            + " modified.";
+
+    /**
+     * The message reported if SCAN is applied to a loaded automaton.
+     */
+    static final String NOT_SCANNABLE = "Loaded automata cannot be scanned.";
+
+    /**
+     * The number of states of the automaton loaded by GENERATE. It starts
+     * in state 1 and its only final state is this one.
+     */
+    static final int GENERATED_SIZE = 5;
+
+    /**
+     * The help dialog printed by HELP.
+     */
+    static final String HELP = """
+            Lambda NFA:
+            Available Commands:
+
+
+            INIT <n>:           Generates new automaton with n states.
+
+            ADD <i> <j> <c>:    Adds a new transition from state i to state
+                                j with symbol c.
+
+            CHECK "s":          Checks if a given word s is in the language
+                                of L(A); A being the current automaton.
+
+            PREFIX "s":         Prints the longest prefix of s that is part
+                                of the language L(A); A being the current
+                                automaton.
+
+            SCAN [ALL] "s":     Prints all non-overlapping leftmost-longest
+                                substrings of s in L(A). With ALL, prints
+                                the leftmost match ending at every index.
+
+            DISPLAY:            Prints all transitions that make up the
+                                automaton in a sorted list.
+
+            SAVE <file>:        Saves the automaton as a binary snapshot.
+
+            LOAD <file>:        Maps a binary snapshot into memory and
+                                queries it in place. The loaded automaton
+                                cannot be modified or scanned.
+
+            GENERATE:           Loads a predefined automaton.
+
+            STATS [ON|OFF]:     Prints and resets the collected statistics,
+                                or turns their collection on or off.
+
+            USE <name>:         Switches to the automaton with the given
+                                name. Only available on a server.
+
+            HELP:               Prints a help dialog, showing all available
+                                commands and their use.
+
+            QUIT:               Exits the program.
+            """;
+
+    private final Type type;
+    private int size = 0;
+    private int source = 0;
+    private int target = 0;
+    private char symbol = 0;
+    private String word = null;
+    private boolean all = false;
+    private Path file = null;
+    private Boolean statistics = null;
+    private String name = null;
+
+    private Command(Type type) {
+        this.type = type;
+    }
+
+    /**
+     * Parses a line of input and checks the arguments of its command.
+     *
+     * @param line The line to parse.
+     * @return The command.
+     * @throws IllegalArgumentException If the line is not a valid command,
+     *                                  with the message to report.
+     */
+    static Command parse(String line) {
+        if (line.isEmpty()) {
+            throw new IllegalArgumentException("Invalid! Try again.");
+        }
+        String[] slices = tokenize(line);
+        Type type = slices.length == 0 ? null : Type.of(slices[0]);
+        if (type == null) {
+            throw new IllegalArgumentException("Not a valid command.");
+        }
+        Command command = new Command(type);
+        switch (type) {
+            case INIT -> {
+                requireArguments(slices, 1);
+                try {
+                    command.size = Integer.parseInt(slices[1]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                            "First argument has to be an integer");
+                }
+                if (command.size <= 0) {
+                    throw new IllegalArgumentException(
+                            "Size has to be greater than 0.");
+                }
+            }
+            case ADD -> {
+                requireArguments(slices, 3);
+                if (slices[3].length() > 1) {
+                    throw new IllegalArgumentException(
+                            "Third argument needs to be a character.");
+                }
+                try {
+                    command.source = Integer.parseInt(slices[1]);
+                    command.target = Integer.parseInt(slices[2]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException(
+                            "First and second argument have to be an integer");
+                }
+                command.symbol = slices[3].charAt(0);
+            }
+            case CHECK, PREFIX, SCAN -> {
+                command.word = extractWord(line);
+                command.all = type == Type.SCAN && slices.length > 1
+                        && slices[1].equalsIgnoreCase("ALL");
+            }
+            case SAVE, LOAD -> {
+                requireArguments(slices, 1);
+                command.file = Path.of(slices[1]);
+            }
+            case STATS -> {
+                if (slices.length > 1) {
+                    switch (slices[1].toUpperCase()) {
+                        case "ON" -> command.statistics = true;
+                        case "OFF" -> command.statistics = false;
+                        default -> throw new IllegalArgumentException(
+                                "Argument has to be ON or OFF.");
+                    }
+                }
+            }
+            case USE -> {
+                requireArguments(slices, 1);
+                command.name = slices[1];
+            }
+            default -> {
+            }
+        }
+        return command;
+    }
+
+    /**
+     * Splits a line of input at whitespace.
+     *
+     * @param line The line to split.
+     * @return The non-empty tokens of the line, in order.
+     */
+    static String[] tokenize(String line) {
+        List<String> tokens = new ArrayList<>(4);
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(line.charAt(i))) {
+                ++i;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(line.charAt(i))) {
+                ++i;
+            }
+            if (i > start) {
+                tokens.add(line.substring(start, i));
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Adds the transitions of the automaton loaded by GENERATE, which has
+     * {@value #GENERATED_SIZE} states.
+     *
+     * @param automaton Receives the transitions.
+     */
+    static void generate(TransitionSink automaton) {
+        automaton.addTransition(1, 2, '~');
+        automaton.addTransition(2, 2, '~');
+        automaton.addTransition(2, 3, 'a');
+        automaton.addTransition(3, 4, 'b');
+        automaton.addTransition(3, 4, '~');
+        automaton.addTransition(4, 5, 'a');
+        automaton.addTransition(2, 4, '~');
+        automaton.addTransition(4, 1, '~');
+    }
+
+    /**
+     * Default getter for the type field.
+     *
+     * @return The kind of command.
+     */
+    Type getType() {
+        return this.type;
+    }
+
+    /**
+     * Default getter for the size field.
+     *
+     * @return The number of states for INIT.
+     */
+    int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Default getter for the source field.
+     *
+     * @return The source state for ADD.
+     */
+    int getSource() {
+        return this.source;
+    }
+
+    /**
+     * Default getter for the target field.
+     *
+     * @return The target state for ADD.
+     */
+    int getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Default getter for the symbol field.
+     *
+     * @return The symbol for ADD.
+     */
+    char getSymbol() {
+        return this.symbol;
+    }
+
+    /**
+     * Default getter for the word field.
+     *
+     * @return The word for CHECK and PREFIX, or the text for SCAN.
+     */
+    String getWord() {
+        return this.word;
+    }
+
+    /**
+     * Default getter for the all field.
+     *
+     * @return {@code true} if SCAN reports all matches instead of the
+     * non-overlapping ones.
+     */
+    boolean isAll() {
+        return this.all;
+    }
+
+    /**
+     * Default getter for the file field.
+     *
+     * @return The snapshot file for SAVE and LOAD.
+     */
+    Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Default getter for the statistics field.
+     *
+     * @return Whether STATS turns the statistics on or off, or {@code null}
+     * if it reports them.
+     */
+    Boolean getStatistics() {
+        return this.statistics;
+    }
+
+    /**
+     * Default getter for the name field.
+     *
+     * @return The name of the automaton for USE.
+     */
+    String getName() {
+        return this.name;
+    }
+
+    private static void requireArguments(String[] slices, int count) {
+        if (slices.length <= count) {
+            throw new IllegalArgumentException(
+                    "Not enough arguments supplied.");
+        }
+    }
+
+    private static String extractWord(String line) {
+        int first = line.indexOf('"');
+        int last = line.lastIndexOf('"');
+        if (first == last) {
+            throw new IllegalArgumentException(
+                    "Word has to be wrapped in double quotes (\"w\") ");
+        }
+        return line.substring(first + 1, last);
+    }
+
+    /**
+     * The kinds of commands.
+     */
+    enum Type {
+        INIT, ADD, CHECK, PREFIX, SCAN, DISPLAY, SAVE, LOAD, GENERATE, STATS,
+        USE, HELP, QUIT;
+
+        private static Type of(String command) {
+            for (Type type : values()) {
+                if (type.name().equalsIgnoreCase(command)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Receives the transitions of a generated automaton.
+     */
+    @FunctionalInterface
+    interface TransitionSink {
+        /**
+         * Adds a single transition.
+         *
+         * @param source The source state.
+         * @param target The target state.
+         * @param symbol The symbol to read.
+         */
+        void addTransition(int source, int target, char symbol);
+    }
+}
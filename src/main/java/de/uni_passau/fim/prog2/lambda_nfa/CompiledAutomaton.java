@@ -0,0 +1,170 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, minimal deterministic automaton compiled from a
+ * {@link LambdaNFA}. Transitions are stored in a flat table with one entry
+ * per state and symbol class, so reading a symbol is a class lookup and a
+ * single array access. State {@code 0} is the dead state, which accepts
+ * nothing and is never left.
+ */
+public final class CompiledAutomaton implements Automaton {
+    /**
+     * The number of the dead state.
+     */
+    static final int DEAD_STATE = 0;
+
+    private final int[] table;
+    private final long[] accepting;
+    private final int startingState;
+    private final int stateCount;
+    private final SymbolClasses classes;
+    private final int width;
+
+    /**
+     * General purpose constructor for the compiled automaton. The arrays are
+     * not copied and may not be modified afterwards.
+     *
+     * @param table         The transition table, where the successor of
+     *                      state {@code q} over symbol class {@code c} is
+     *                      stored at {@code q * classes.count() + c}.
+     * @param accepting     A bitmap containing the final states.
+     * @param startingState The number of the state where the automaton
+     *                      starts.
+     * @param classes       The symbol classes of the table columns.
+     */
+    CompiledAutomaton(int[] table, long[] accepting, int startingState,
+                      SymbolClasses classes) {
+        this.table = table;
+        this.accepting = accepting;
+        this.startingState = startingState;
+        this.classes = classes;
+        this.width = classes.count();
+        this.stateCount = table.length / this.width;
+    }
+
+    /**
+     * Checks a transition on validity. Since the automaton is immutable, no
+     * transition can be added to it.
+     *
+     * @param source The id of the source state.
+     * @param target The id of the target state.
+     * @param symbol The symbol to be read.
+     * @return Always {@code false}.
+     */
+    @Override
+    public boolean isValidTransition(int source, int target, char symbol) {
+        return false;
+    }
+
+    /**
+     * Not supported, since the automaton is immutable.
+     *
+     * @param source The source state.
+     * @param target The target state.
+     * @param symbol The symbol to read.
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void addTransition(int source, int target, char symbol) {
+        throw new UnsupportedOperationException(
+                "Compiled automata may not be modified.");
+    }
+
+    /**
+     * Decides the element problem for the regular language defined by this
+     * automaton.
+     *
+     * @param word The word to check.
+     * @return {@code true} if and only if {@code word} is in the language.
+     */
+    @Override
+    public boolean isElement(String word) {
+        int state = this.startingState;
+        for (int i = 0; i < word.length() && state != DEAD_STATE; i++) {
+            state = next(state, word.charAt(i));
+        }
+        return isAccepting(state);
+    }
+
+    /**
+     * Computes the longest prefix of {@code word} which is an element of the
+     * language. Can be the {@code word} itself, if and only if
+     * {@link Automaton#isElement(String)} called on it returns {@code true}.
+     *
+     * @param word The word whose prefixes will be checked.
+     * @return The longest prefix, or {@code null} if none exists.
+     */
+    @Override
+    public String longestPrefix(String word) {
+        int state = this.startingState;
+        int length = isAccepting(state) ? 0 : -1;
+        for (int i = 0; i < word.length() && state != DEAD_STATE; i++) {
+            state = next(state, word.charAt(i));
+            if (isAccepting(state)) {
+                length = i + 1;
+            }
+        }
+        if (length < 0) {
+            return null;
+        }
+        return word.substring(0, length);
+    }
+
+    /**
+     * Getter for the number of states, including the dead state.
+     *
+     * @return The number of states of the minimal automaton.
+     */
+    public int getStateCount() {
+        return this.stateCount;
+    }
+
+    /**
+     * Generates a string representation of the automaton. Transitions into
+     * the dead state are omitted.
+     *
+     * @return A string including all transitions in the automaton.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int ranges = this.classes.rangeCount();
+        long[] edges = new long[ranges];
+        for (int source = 1; source < this.stateCount; source++) {
+            int count = 0;
+            for (int r = 0; r < ranges; r++) {
+                int target = this.table[source * this.width
+                        + this.classes.rangeClass(r)];
+                if (target != DEAD_STATE) {
+                    edges[count++] = (long) target * ranges + r;
+                }
+            }
+            Arrays.sort(edges, 0, count);
+            for (int i = 0; i < count; i++) {
+                int r = (int) (edges[i] % ranges);
+                char first = this.classes.rangeStart(r);
+                char last = this.classes.rangeEnd(r);
+                sb.append("(").append(source).append(", ")
+                        .append(edges[i] / ranges).append(") ");
+                if (first == last) {
+                    sb.append(first);
+                } else {
+                    sb.append('[').append(first).append('-').append(last)
+                            .append(']');
+                }
+                sb.append(System.lineSeparator());
+            }
+        }
+        return sb.toString();
+    }
+
+    private int next(int state, char symbol) {
+        return this.table[state * this.width + this.classes.classOf(symbol)];
+    }
+
+    private boolean isAccepting(int state) {
+        return (this.accepting[state >>> 6] & (1L << state)) != 0;
+    }
+}
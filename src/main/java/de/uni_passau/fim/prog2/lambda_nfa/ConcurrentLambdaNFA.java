@@ -0,0 +1,750 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A lambda automaton which may be queried by many threads while transitions
+ * are added. Readers never take locks: every query runs on one immutable
+ * {@link Snapshot}, read once from a volatile field. Writers collect their
+ * transitions in a {@link Batch} and publish a new snapshot atomically, so
+ * a query sees either all transitions of a batch or none of them.
+ *
+ * <p>Snapshots share their structure. The states are stored in chunks of
+ * {@value #CHUNK_SIZE} immutable rows, so publishing a batch only copies
+ * the array of chunks, the chunks containing a changed state and the rows
+ * of the changed states. All other rows are shared with the previous
+ * snapshot. The transitions entering each state are kept in reverse rows
+ * the same way, and the lambda closures in chunks of bitsets. Publishing
+ * updates the live states and the lambda closures from the previous
+ * snapshot, visiting only the states which reach a source of the batch, so
+ * a snapshot never has to be rebuilt from all of its rows.
+ */
+public final class ConcurrentLambdaNFA implements Automaton {
+    /**
+     * The number of states per chunk of a snapshot.
+     */
+    static final int CHUNK_SIZE = 64;
+
+    private static final int CHUNK_SHIFT = 6;
+    private static final Row EMPTY_ROW = new Row(new int[0], new char[0],
+            new char[0]);
+
+    private final Object writeLock = new Object();
+    private volatile Snapshot current;
+
+    /**
+     * General purpose constructor for the concurrent automaton, initially
+     * without transitions.
+     *
+     * @param stateCount    Number of states to automaton should consist of.
+     * @param startingState The number of the state where the automaton starts.
+     * @param endStates     A list of numbers describing which states should be
+     *                      the final states of the automaton.
+     */
+    public ConcurrentLambdaNFA(int stateCount, int startingState,
+                               List<Integer> endStates) {
+        this(stateCount, startingState, endStates, Alphabet.DEFAULT);
+    }
+
+    /**
+     * Constructor for a concurrent automaton over a custom alphabet.
+     *
+     * @param stateCount    Number of states to automaton should consist of.
+     * @param startingState The number of the state where the automaton starts.
+     * @param endStates     A list of numbers describing which states should be
+     *                      the final states of the automaton.
+     * @param alphabet      The symbols transitions may read.
+     * @throws IllegalArgumentException If {@code alphabet} contains
+     *                                  {@link LambdaNFA#LAMBDA_SYMBOL}.
+     */
+    public ConcurrentLambdaNFA(int stateCount, int startingState,
+                               List<Integer> endStates, Alphabet alphabet) {
+        if (alphabet.contains(LambdaNFA.LAMBDA_SYMBOL)) {
+            throw new IllegalArgumentException("Alphabet may not contain "
+                    + LambdaNFA.LAMBDA_SYMBOL + ".");
+        }
+        BitSet finals = new BitSet();
+        for (Integer i : endStates) {
+            finals.set(i);
+        }
+        int chunkCount = (stateCount >>> CHUNK_SHIFT) + 1;
+        Row[] emptyRows = new Row[CHUNK_SIZE];
+        Arrays.fill(emptyRows, EMPTY_ROW);
+        Row[][] chunks = new Row[chunkCount][];
+        Arrays.fill(chunks, emptyRows);
+        BitSet[][] closures = new BitSet[chunkCount][];
+        Arrays.fill(closures, new BitSet[CHUNK_SIZE]);
+        // Chunks are copied before they are changed, so all snapshots may
+        // share them, and without transitions exactly the final states are
+        // live.
+        this.current = new Snapshot(0, stateCount, alphabet, startingState,
+                finals, chunks, chunks.clone(), closures, finals);
+    }
+
+    /**
+     * Getter for the latest published snapshot. Queries on the result are
+     * not affected by later changes.
+     *
+     * @return The current snapshot.
+     */
+    public Snapshot snapshot() {
+        return this.current;
+    }
+
+    /**
+     * Starts a batch of transitions, which is published as a whole by
+     * {@link Batch#publish()}.
+     *
+     * @return A new, empty batch.
+     */
+    public Batch batch() {
+        return new Batch();
+    }
+
+    /**
+     * Checks a transition on validity, i.e., if it can be part of the
+     * automaton.
+     *
+     * @param source The id of the source state.
+     * @param target The id of the target state.
+     * @param symbol The symbol to be read.
+     * @return {@code true} if and only if the parameters represent a valid
+     * transition of this automation.
+     */
+    @Override
+    public boolean isValidTransition(int source, int target, char symbol) {
+        return this.current.isValidTransition(source, target, symbol,
+                symbol);
+    }
+
+    /**
+     * Adds a single transition and publishes it immediately as a new
+     * snapshot. Adding many transitions is cheaper with {@link #batch()}.
+     *
+     * @param source The source state.
+     * @param target The target state.
+     * @param symbol The symbol to read.
+     * @throws IllegalArgumentException If the transition is not valid.
+     */
+    @Override
+    public void addTransition(int source, int target, char symbol) {
+        batch().addTransition(source, target, symbol).publish();
+    }
+
+    /**
+     * Decides the element problem on the current snapshot.
+     *
+     * @param word The word to check.
+     * @return {@code true} if and only if {@code word} is in the language.
+     */
+    @Override
+    public boolean isElement(String word) {
+        return this.current.isElement(word);
+    }
+
+    /**
+     * Computes the longest prefix of {@code word} in the language of the
+     * current snapshot.
+     *
+     * @param word The word whose prefixes will be checked.
+     * @return The longest prefix, or {@code null} if none exists.
+     */
+    @Override
+    public String longestPrefix(String word) {
+        return this.current.longestPrefix(word);
+    }
+
+    /**
+     * Finds spans of {@code text} which are in the language of the current
+     * snapshot, see {@link LambdaNFA#findAll(CharSequence, Match.Mode)}.
+     *
+     * @param text The text to search.
+     * @param mode The matches to report.
+     * @return The matches, ordered by their end.
+     */
+    public List<Match> findAll(CharSequence text, Match.Mode mode) {
+        return this.current.findAll(text, mode);
+    }
+
+    /**
+     * Saves the current snapshot as a binary snapshot, which
+     * {@link OffHeapAutomaton#load(Path)} maps into memory.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        this.current.save(file);
+    }
+
+    /**
+     * Generates a string representation of the current snapshot.
+     *
+     * @return A string including all transitions in the automaton.
+     */
+    @Override
+    public String toString() {
+        return this.current.toString();
+    }
+
+    /**
+     * Transitions collected by a single writer. Publishing validates them
+     * all first, so an invalid transition leaves the automaton unchanged.
+     * Instances are not thread-safe, but several writers may publish their
+     * own batches at the same time; the batches are then applied one after
+     * another.
+     */
+    public final class Batch {
+        private int[] sources = new int[16];
+        private int[] targets = new int[16];
+        private char[] symbols = new char[16];
+        private char[] lastSymbols = new char[16];
+        private int transitionCount = 0;
+
+        private Batch() {
+        }
+
+        /**
+         * Adds a single transition to the batch.
+         *
+         * @param source The source state.
+         * @param target The target state.
+         * @param symbol The symbol to read.
+         * @return This batch.
+         */
+        public Batch addTransition(int source, int target, char symbol) {
+            return addTransition(source, target, symbol, symbol);
+        }
+
+        /**
+         * Adds a single transition over a range of symbols to the batch.
+         *
+         * @param source The source state.
+         * @param target The target state.
+         * @param first  The first symbol of the range.
+         * @param last   The last symbol of the range, inclusive.
+         * @return This batch.
+         */
+        public Batch addTransition(int source, int target, char first,
+                                   char last) {
+            if (this.transitionCount == this.sources.length) {
+                int length = 2 * this.transitionCount;
+                this.sources = Arrays.copyOf(this.sources, length);
+                this.targets = Arrays.copyOf(this.targets, length);
+                this.symbols = Arrays.copyOf(this.symbols, length);
+                this.lastSymbols = Arrays.copyOf(this.lastSymbols, length);
+            }
+            this.sources[this.transitionCount] = source;
+            this.targets[this.transitionCount] = target;
+            this.symbols[this.transitionCount] = first;
+            this.lastSymbols[this.transitionCount] = last;
+            ++this.transitionCount;
+            return this;
+        }
+
+        /**
+         * Publishes all transitions of the batch as one new snapshot and
+         * empties the batch.
+         *
+         * @return The published snapshot.
+         * @throws IllegalArgumentException If one of the transitions is not
+         *                                  valid.
+         */
+        public Snapshot publish() {
+            synchronized (writeLock) {
+                Snapshot base = current;
+                for (int i = 0; i < this.transitionCount; i++) {
+                    if (!base.isValidTransition(this.sources[i],
+                            this.targets[i], this.symbols[i],
+                            this.lastSymbols[i])) {
+                        char first = this.symbols[i];
+                        char last = this.lastSymbols[i];
+                        throw new IllegalArgumentException("Transition ("
+                                + this.sources[i] + ", " + this.targets[i]
+                                + ") " + (first == last ? String.valueOf(first)
+                                : "[" + first + "-" + last + "]")
+                                + " is not valid.");
+                    }
+                }
+                Snapshot next = base.with(this);
+                current = next;
+                this.transitionCount = 0;
+                return next;
+            }
+        }
+    }
+
+    /**
+     * An immutable version of the automaton. All queries on a snapshot see
+     * exactly the transitions published up to its creation, independently
+     * of concurrent writers. Queries run directly on the rows, like
+     * {@link FrontierSimulation} does on states: every step looks up the
+     * transitions of the active states, adds the lambda closures of their
+     * targets and drops all states which are not live. Rows are searched
+     * linearly for the symbol, so a step takes time proportional to the
+     * number of transitions leaving the active states.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final int stateCount;
+        private final Alphabet alphabet;
+        private final int startingState;
+        private final BitSet endStates;
+        private final Row[][] chunks;
+        private final Row[][] reverseChunks;
+        private final BitSet[][] closures;
+        private final BitSet liveStates;
+
+        private Snapshot(long version, int stateCount, Alphabet alphabet,
+                         int startingState, BitSet endStates, Row[][] chunks,
+                         Row[][] reverseChunks, BitSet[][] closures,
+                         BitSet liveStates) {
+            this.version = version;
+            this.stateCount = stateCount;
+            this.alphabet = alphabet;
+            this.startingState = startingState;
+            this.endStates = endStates;
+            this.chunks = chunks;
+            this.reverseChunks = reverseChunks;
+            this.closures = closures;
+            this.liveStates = liveStates;
+        }
+
+        /**
+         * Default getter for the version field.
+         *
+         * @return The number of batches published before this snapshot.
+         */
+        public long getVersion() {
+            return this.version;
+        }
+
+        /**
+         * Decides the element problem for the regular language defined by
+         * this snapshot.
+         *
+         * @param word The word to check.
+         * @return {@code true} if and only if {@code word} is in the
+         * language.
+         */
+        public boolean isElement(String word) {
+            BitSet active = initialSet();
+            BitSet next = new BitSet(this.stateCount + 1);
+            for (int i = 0; i < word.length(); i++) {
+                step(active, word.charAt(i), next);
+                if (next.isEmpty()) {
+                    return false;
+                }
+                BitSet swap = active;
+                active = next;
+                next = swap;
+            }
+            return active.intersects(this.endStates);
+        }
+
+        /**
+         * Computes the longest prefix of {@code word} which is an element
+         * of the language of this snapshot.
+         *
+         * @param word The word whose prefixes will be checked.
+         * @return The longest prefix, or {@code null} if none exists.
+         */
+        public String longestPrefix(String word) {
+            BitSet active = initialSet();
+            BitSet next = new BitSet(this.stateCount + 1);
+            int length = active.intersects(this.endStates) ? 0 : -1;
+            for (int i = 0; i < word.length() && !active.isEmpty(); i++) {
+                step(active, word.charAt(i), next);
+                BitSet swap = active;
+                active = next;
+                next = swap;
+                if (active.intersects(this.endStates)) {
+                    length = i + 1;
+                }
+            }
+            if (length < 0) {
+                return null;
+            }
+            return word.substring(0, length);
+        }
+
+        /**
+         * Finds spans of {@code text} which are in the language of this
+         * snapshot, see {@link LambdaNFA#findAll(CharSequence, Match.Mode)}.
+         *
+         * @param text The text to search.
+         * @param mode The matches to report.
+         * @return The matches, ordered by their end.
+         */
+        public List<Match> findAll(CharSequence text, Match.Mode mode) {
+            BitSet startingStates = new BitSet(this.stateCount + 1);
+            startingStates.set(this.startingState);
+            TextScan.Graph graph = new TextScan.Graph() {
+                @Override
+                public void forEachTarget(int state, char symbol,
+                                          IntConsumer action) {
+                    Row row = row(state);
+                    for (int j = 0; j < row.targets.length; j++) {
+                        if (row.accepts(j, symbol)) {
+                            action.accept(row.targets[j]);
+                        }
+                    }
+                }
+
+                @Override
+                public BitSet closure(int state) {
+                    return Snapshot.this.closure(state);
+                }
+            };
+            return new TextScan(graph, this.stateCount + 1, startingStates,
+                    this.endStates, this.liveStates).run(text, mode);
+        }
+
+        /**
+         * Saves this snapshot as a binary snapshot, which
+         * {@link OffHeapAutomaton#load(Path)} maps into memory. Builds the
+         * states of the snapshot first, which needs O(n + m) time.
+         *
+         * @param file The file to write.
+         * @throws IOException If the file cannot be written.
+         */
+        public void save(Path file) throws IOException {
+            State[] states = new State[this.stateCount + 1];
+            for (int s = 1; s <= this.stateCount; s++) {
+                states[s] = new State(s);
+            }
+            for (int s = 1; s <= this.stateCount; s++) {
+                Row row = row(s);
+                for (int j = 0; j < row.targets.length; j++) {
+                    states[s].addTransition(new Transition(states[s],
+                            states[row.targets[j]], row.firsts[j],
+                            row.lasts[j]));
+                }
+                states[s].setClosure(closure(s));
+            }
+            BitSet startingStates = new BitSet(states.length);
+            startingStates.set(this.startingState);
+            try (OffHeapAutomaton snapshot = OffHeapAutomaton.of(states,
+                    startingStates, this.endStates)) {
+                snapshot.save(file);
+            }
+        }
+
+        /**
+         * Generates a string representation of the snapshot.
+         *
+         * @return A string including all transitions in the automaton.
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int s = 1; s <= this.stateCount; s++) {
+                Row row = row(s);
+                for (int j = 0; j < row.targets.length; j++) {
+                    char first = row.firsts[j];
+                    char last = row.lasts[j];
+                    sb.append("(").append(s).append(", ")
+                            .append(row.targets[j]).append(") ");
+                    if (first == last) {
+                        sb.append(first);
+                    } else {
+                        sb.append('[').append(first).append('-')
+                                .append(last).append(']');
+                    }
+                    sb.append(System.lineSeparator());
+                }
+            }
+            return sb.toString();
+        }
+
+        private boolean isValidTransition(int source, int target, char first,
+                                          char last) {
+            if (source > this.stateCount || target > this.stateCount
+                    || source <= 0 || target <= 0) {
+                return false;
+            }
+            if (first == LambdaNFA.LAMBDA_SYMBOL) {
+                return last == first;
+            }
+            return this.alphabet.contains(first, last);
+        }
+
+        private Row row(int state) {
+            return at(this.chunks, state);
+        }
+
+        private BitSet closure(int state) {
+            return at(this.closures, state);
+        }
+
+        private BitSet initialSet() {
+            BitSet active = new BitSet(this.stateCount + 1);
+            addClosure(active, this.startingState);
+            active.and(this.liveStates);
+            return active;
+        }
+
+        private void step(BitSet active, char symbol, BitSet next) {
+            next.clear();
+            if (symbol == LambdaNFA.LAMBDA_SYMBOL) {
+                return;
+            }
+            for (int i = active.nextSetBit(0); i >= 0;
+                 i = active.nextSetBit(i + 1)) {
+                Row row = row(i);
+                for (int j = 0; j < row.targets.length; j++) {
+                    if (row.accepts(j, symbol)) {
+                        addClosure(next, row.targets[j]);
+                    }
+                }
+            }
+            next.and(this.liveStates);
+            if (Statistics.enabled) {
+                Statistics.recordStep(active.cardinality(),
+                        next.cardinality());
+            }
+        }
+
+        /**
+         * Adds a state and its lambda closure to a set. Closures are closed
+         * under lambda transitions, so nothing is added if the state is
+         * already contained.
+         */
+        private void addClosure(BitSet set, int state) {
+            if (set.get(state)) {
+                return;
+            }
+            BitSet closure = closure(state);
+            if (closure == null) {
+                set.set(state);
+            } else {
+                set.or(closure);
+            }
+        }
+
+        /**
+         * Derives the snapshot containing the transitions of a batch. The
+         * rows of both directions are copied as described for
+         * {@link ConcurrentLambdaNFA}. The live states and lambda closures
+         * are updated from the ones of this snapshot, using the reverse
+         * rows: a transition into a live state makes its source and all
+         * states reaching it live, and a lambda transition extends the
+         * closures of all states reaching its source over lambda
+         * transitions by the closure of its target. States which do not
+         * reach the source of a new transition are not visited.
+         */
+        private Snapshot with(Batch batch) {
+            Row[][] chunks = insert(this.chunks, batch, batch.sources,
+                    batch.targets);
+            Row[][] reverseChunks = insert(this.reverseChunks, batch,
+                    batch.targets, batch.sources);
+            return new Snapshot(this.version + 1, this.stateCount,
+                    this.alphabet, this.startingState, this.endStates, chunks,
+                    reverseChunks,
+                    extendClosures(this.closures, reverseChunks, batch),
+                    extendLiveStates(this.liveStates, reverseChunks, batch));
+        }
+
+        private static BitSet extendLiveStates(BitSet liveStates,
+                                               Row[][] reverseChunks,
+                                               Batch batch) {
+            BitSet live = liveStates;
+            int[] queue = new int[16];
+            for (int i = 0; i < batch.transitionCount; i++) {
+                int source = batch.sources[i];
+                if (!live.get(batch.targets[i]) || live.get(source)) {
+                    continue;
+                }
+                if (live == liveStates) {
+                    live = (BitSet) live.clone();
+                }
+                live.set(source);
+                queue[0] = source;
+                int size = 1;
+                for (int head = 0; head < size; head++) {
+                    Row row = at(reverseChunks, queue[head]);
+                    for (int j = 0; j < row.targets.length; j++) {
+                        int predecessor = row.targets[j];
+                        if (!live.get(predecessor)) {
+                            live.set(predecessor);
+                            if (size == queue.length) {
+                                queue = Arrays.copyOf(queue, 2 * size);
+                            }
+                            queue[size++] = predecessor;
+                        }
+                    }
+                }
+            }
+            return live;
+        }
+
+        /**
+         * Extends the lambda closures by the lambda transitions of a batch.
+         * The states reaching the source of a transition are searched with
+         * all transitions of the batch already in place, so the closures are
+         * complete regardless of the order the transitions are processed
+         * in. Closures are never modified once published; changed ones are
+         * copied together with their chunk.
+         */
+        private static BitSet[][] extendClosures(BitSet[][] published,
+                                                 Row[][] reverseChunks,
+                                                 Batch batch) {
+            BitSet[][] closures = published;
+            int[] queue = new int[16];
+            for (int i = 0; i < batch.transitionCount; i++) {
+                if (batch.symbols[i] != LambdaNFA.LAMBDA_SYMBOL) {
+                    continue;
+                }
+                int target = batch.targets[i];
+                BitSet reached = at(closures, target);
+                if (reached == null) {
+                    reached = new BitSet();
+                    reached.set(target);
+                }
+                BitSet visited = new BitSet();
+                visited.set(batch.sources[i]);
+                queue[0] = batch.sources[i];
+                int size = 1;
+                for (int head = 0; head < size; head++) {
+                    int state = queue[head];
+                    int c = state >>> CHUNK_SHIFT;
+                    int k = state & (CHUNK_SIZE - 1);
+                    BitSet closure = closures[c][k];
+                    BitSet extended = closure == null ? new BitSet()
+                            : (BitSet) closure.clone();
+                    extended.set(state);
+                    extended.or(reached);
+                    if (extended.cardinality() > 1
+                            && !extended.equals(closure)) {
+                        if (closures == published) {
+                            closures = closures.clone();
+                        }
+                        if (closures[c] == published[c]) {
+                            closures[c] = closures[c].clone();
+                        }
+                        closures[c][k] = extended;
+                    }
+                    Row row = at(reverseChunks, state);
+                    for (int j = 0; j < row.targets.length; j++) {
+                        int predecessor = row.targets[j];
+                        if (row.firsts[j] == LambdaNFA.LAMBDA_SYMBOL
+                                && !visited.get(predecessor)) {
+                            visited.set(predecessor);
+                            if (size == queue.length) {
+                                queue = Arrays.copyOf(queue, 2 * size);
+                            }
+                            queue[size++] = predecessor;
+                        }
+                    }
+                }
+            }
+            return closures;
+        }
+
+        /**
+         * Looks up the entry of a state in chunks of rows or closures.
+         */
+        private static <T> T at(T[][] chunks, int state) {
+            return chunks[state >>> CHUNK_SHIFT][state & (CHUNK_SIZE - 1)];
+        }
+
+        /**
+         * Copies the chunks of rows containing a state of {@code keys} and
+         * adds the transitions of the batch to the rows of these states.
+         *
+         * @param chunks The chunks to copy, which are not modified.
+         * @param batch  The transitions to add.
+         * @param keys   The states whose rows receive the transitions, i.e.,
+         *               the sources for forward rows.
+         * @param ends   The states the rows point to, i.e., the targets for
+         *               forward rows.
+         * @return The chunks containing the transitions of the batch.
+         */
+        private static Row[][] insert(Row[][] chunks, Batch batch,
+                                      int[] keys, int[] ends) {
+            long[] entries = new long[batch.transitionCount];
+            for (int i = 0; i < entries.length; i++) {
+                entries[i] = (long) keys[i] << 32 | i;
+            }
+            Arrays.sort(entries);
+            Row[][] copy = chunks.clone();
+            int from = 0;
+            while (from < entries.length) {
+                int state = (int) (entries[from] >>> 32);
+                int to = from + 1;
+                while (to < entries.length
+                        && (int) (entries[to] >>> 32) == state) {
+                    ++to;
+                }
+                int c = state >>> CHUNK_SHIFT;
+                int k = state & (CHUNK_SIZE - 1);
+                if (copy[c] == chunks[c]) {
+                    copy[c] = chunks[c].clone();
+                }
+                copy[c][k] = chunks[c][k].with(batch, ends, entries, from, to);
+                from = to;
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * The immutable transitions leaving a single state, in the order they
+     * are printed, i.e., sorted like {@link Transition}. Reverse rows hold
+     * the transitions entering a state in the same form, with the sources
+     * in place of the targets.
+     */
+    private static final class Row {
+        private final int[] targets;
+        private final char[] firsts;
+        private final char[] lasts;
+
+        private Row(int[] targets, char[] firsts, char[] lasts) {
+            this.targets = targets;
+            this.firsts = firsts;
+            this.lasts = lasts;
+        }
+
+        private boolean accepts(int j, char symbol) {
+            return this.firsts[j] <= symbol && symbol <= this.lasts[j]
+                    && this.firsts[j] != LambdaNFA.LAMBDA_SYMBOL;
+        }
+
+        private Row with(Batch batch, int[] ends, long[] entries, int from,
+                         int to) {
+            int size = this.targets.length + to - from;
+            long[] keys = new long[size];
+            for (int j = 0; j < this.targets.length; j++) {
+                keys[j] = sortKey(this.targets[j], this.firsts[j],
+                        this.lasts[j]);
+            }
+            for (int k = from; k < to; k++) {
+                int i = (int) entries[k];
+                keys[this.targets.length + k - from] = sortKey(ends[i],
+                        batch.symbols[i], batch.lastSymbols[i]);
+            }
+            Arrays.sort(keys);
+            int[] targets = new int[size];
+            char[] firsts = new char[size];
+            char[] lasts = new char[size];
+            for (int j = 0; j < size; j++) {
+                targets[j] = (int) (keys[j] >>> 34);
+                int first = (int) (keys[j] >>> 17) & 0x1FFFF;
+                firsts[j] = first == 0 ? LambdaNFA.LAMBDA_SYMBOL
+                        : (char) (first - 1);
+                lasts[j] = (char) (keys[j] & 0xFFFF);
+            }
+            return new Row(targets, firsts, lasts);
+        }
+
+        private static long sortKey(int target, char first, char last) {
+            long symbol = first == LambdaNFA.LAMBDA_SYMBOL ? 0 : first + 1;
+            return (long) target << 34 | symbol << 17 | last;
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A lazily built deterministic automaton on top of a lambda automaton. Every
+ * distinct set of active states is interned once as a cached state, and its
+ * successors are computed on first use. The cache is bounded by a memory
+ * limit; if the limit is hit, the cache is flushed and the current query
+ * falls back to the plain simulation.
+ *
+ * <p>Every cached state carries a payload describing how it accepts, which
+ * is computed once when the state is interned: {@link Boolean#TRUE} for
+ * {@link LambdaNFA}, or the accepting patterns for a
+ * {@link MultiAutomaton}. A state whose payload is {@code null} is not
+ * accepting.
+ *
+ * @param <A> The type of the payload of accepting states.
+ */
+public final class DfaCache<A> {
+    /**
+     * The memory limit used for new caches, in bytes.
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 1L << 21;
+
+    /**
+     * Estimated fixed size of a cached state, in bytes. Covers the state
+     * object, the bitset object and the map entry, but not the successor
+     * array, which has one entry per symbol class.
+     */
+    private static final long STATE_OVERHEAD = 128;
+
+    private final FrontierSimulation simulation;
+    private final Function<BitSet, A> payloadOf;
+    private final ToLongFunction<A> payloadSize;
+    private final Map<BitSet, CachedState<A>> cachedStates = new HashMap<>();
+    private SymbolClasses classes = null;
+    private CachedState<A> start = null;
+    private long memoryLimit = DEFAULT_MEMORY_LIMIT;
+    private long memoryUsed = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long flushes = 0;
+
+    /**
+     * General purpose constructor for the cache, initially empty.
+     *
+     * @param simulation  The simulation used to compute successors and as
+     *                    fallback once the memory limit is hit.
+     * @param payloadOf   Computes the payload of a set of states, or
+     *                    {@code null} if the set does not accept.
+     * @param payloadSize Estimates the size of a payload, in bytes.
+     */
+    DfaCache(FrontierSimulation simulation, Function<BitSet, A> payloadOf,
+             ToLongFunction<A> payloadSize) {
+        this.simulation = simulation;
+        this.payloadOf = payloadOf;
+        this.payloadSize = payloadSize;
+    }
+
+    /**
+     * Creates a cache which only tells whether a set of states accepts.
+     *
+     * @param simulation The simulation used to compute successors and as
+     *                   fallback once the memory limit is hit.
+     * @return The cache, initially empty.
+     */
+    static DfaCache<Boolean> accepting(FrontierSimulation simulation) {
+        return new DfaCache<>(simulation,
+                states -> simulation.isAccepting(states) ? Boolean.TRUE : null,
+                payload -> 0);
+    }
+
+    /**
+     * Computes the length of the longest prefix of {@code word} accepted by
+     * the automaton.
+     *
+     * @param word The word whose prefixes will be checked.
+     * @return The length of the longest accepted prefix, or {@code -1} if
+     * there is none.
+     */
+    int longestPrefixLength(String word) {
+        CachedState<A> state = start();
+        if (state == null) {
+            return this.simulation.longestPrefixLength(word);
+        }
+        int length = state.payload != null ? 0 : -1;
+        for (int i = 0; i < word.length() && !state.isDead(); i++) {
+            state = successor(state, word.charAt(i));
+            if (state == null) {
+                return this.simulation.longestPrefixLength(word);
+            }
+            if (state.payload != null) {
+                length = i + 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Decides whether the automaton accepts {@code word} as a whole.
+     *
+     * @param word The word to check.
+     * @return {@code true} if and only if {@code word} is accepted.
+     */
+    boolean accepts(String word) {
+        CachedState<A> state = start();
+        if (state == null) {
+            return this.simulation.accepts(word);
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (state.isDead()) {
+                return false;
+            }
+            state = successor(state, word.charAt(i));
+            if (state == null) {
+                return this.simulation.accepts(word);
+            }
+        }
+        return state.payload != null;
+    }
+
+    /**
+     * Drops all cached states. Has to be called whenever a transition is
+     * added to the underlying automaton. The symbol classes are kept and
+     * only split at the bounds of the new transition, so they are not
+     * recomputed from all transitions. Does not reset the counters.
+     *
+     * @param first The first symbol of the new transition, or
+     *              {@link LambdaNFA#LAMBDA_SYMBOL}.
+     * @param last  The last symbol of the new transition, inclusive.
+     */
+    void transitionAdded(char first, char last) {
+        clear();
+        if (this.classes != null && first != LambdaNFA.LAMBDA_SYMBOL) {
+            this.classes = this.classes.with(first, last);
+        }
+    }
+
+    /**
+     * Sets the maximum amount of memory the cache may occupy. A limit of
+     * {@code 0} disables caching completely.
+     *
+     * @param memoryLimit The new limit, in bytes.
+     * @throws IllegalArgumentException If {@code memoryLimit} is negative.
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        if (memoryLimit < 0) {
+            throw new IllegalArgumentException(
+                    "Memory limit may not be negative.");
+        }
+        this.memoryLimit = memoryLimit;
+        if (this.memoryUsed > memoryLimit) {
+            flush();
+        }
+    }
+
+    /**
+     * Default getter for the memoryLimit field.
+     *
+     * @return The maximum amount of memory the cache may occupy, in bytes.
+     */
+    public long getMemoryLimit() {
+        return this.memoryLimit;
+    }
+
+    /**
+     * Default getter for the memoryUsed field.
+     *
+     * @return The estimated amount of memory currently occupied, in bytes.
+     */
+    public long getMemoryUsed() {
+        return this.memoryUsed;
+    }
+
+    /**
+     * Getter for the number of cached states.
+     *
+     * @return The number of distinct state sets currently interned.
+     */
+    public int getStateCount() {
+        return this.cachedStates.size();
+    }
+
+    /**
+     * Default getter for the hits field.
+     *
+     * @return The number of transitions which were found in the cache.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Default getter for the misses field.
+     *
+     * @return The number of transitions which had to be computed.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Default getter for the flushes field.
+     *
+     * @return The number of times the cache was flushed because the memory
+     * limit was hit.
+     */
+    public long getFlushes() {
+        return this.flushes;
+    }
+
+    /**
+     * Resets the hit, miss and flush counters to zero.
+     */
+    public void resetCounters() {
+        this.hits = 0;
+        this.misses = 0;
+        this.flushes = 0;
+    }
+
+    /**
+     * Looks up the cached state of the starting states, interning it if
+     * necessary.
+     *
+     * @return The cached state, or {@code null} if the memory limit was hit
+     * and the cache flushed.
+     */
+    CachedState<A> start() {
+        if (this.classes == null) {
+            this.classes = this.simulation.symbolClasses();
+        }
+        if (this.start == null) {
+            this.start = intern(this.simulation.initialSet());
+        }
+        return this.start;
+    }
+
+    /**
+     * Looks up the successor of a cached state, computing and interning it
+     * on first use.
+     *
+     * @param state  A cached state obtained since the last flush.
+     * @param symbol The symbol to read.
+     * @return The successor, or {@code null} if the memory limit was hit
+     * and the cache flushed.
+     */
+    CachedState<A> successor(CachedState<A> state, char symbol) {
+        int index = this.classes.classOf(symbol);
+        if (index == 0) {
+            return intern(new BitSet());
+        }
+        CachedState<A> successor = state.successors[index];
+        if (Statistics.enabled) {
+            Statistics.recordCacheLookup(successor != null);
+        }
+        if (successor != null) {
+            ++this.hits;
+            return successor;
+        }
+        ++this.misses;
+        successor = intern(this.simulation.successors(state.states, symbol));
+        if (successor != null) {
+            state.successors[index] = successor;
+        }
+        return successor;
+    }
+
+    private CachedState<A> intern(BitSet states) {
+        CachedState<A> state = this.cachedStates.get(states);
+        if (state != null) {
+            return state;
+        }
+        A payload = this.payloadOf.apply(states);
+        int width = this.classes.count();
+        long size = STATE_OVERHEAD + 8L * width + states.size() / 8
+                + (payload == null ? 0
+                : this.payloadSize.applyAsLong(payload));
+        if (this.memoryUsed + size > this.memoryLimit) {
+            flush();
+            return null;
+        }
+        state = new CachedState<>(states, payload, width);
+        this.cachedStates.put(states, state);
+        this.memoryUsed += size;
+        return state;
+    }
+
+    private void flush() {
+        clear();
+        ++this.flushes;
+    }
+
+    private void clear() {
+        this.cachedStates.clear();
+        this.start = null;
+        this.memoryUsed = 0;
+    }
+
+    /**
+     * A single interned set of active states together with its payload and
+     * its lazily computed successors.
+     *
+     * @param <A> The type of the payload.
+     */
+    static final class CachedState<A> {
+        private final BitSet states;
+        private final A payload;
+        private final CachedState<A>[] successors;
+
+        @SuppressWarnings("unchecked")
+        private CachedState(BitSet states, A payload, int width) {
+            this.states = states;
+            this.payload = payload;
+            this.successors = (CachedState<A>[]) new CachedState<?>[width];
+        }
+
+        /**
+         * Default getter for the payload field.
+         *
+         * @return The payload, or {@code null} if the state does not accept.
+         */
+        A getPayload() {
+            return this.payload;
+        }
+
+        /**
+         * Checks whether no state is active, so no word is accepted from
+         * here on.
+         *
+         * @return {@code true} if and only if the set of states is empty.
+         */
+        boolean isDead() {
+            return this.states.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a lambda automaton into a minimal {@link CompiledAutomaton}. Runs
+ * the subset construction over the lambda closures and minimizes the result
+ * with Hopcroft's algorithm. Symbols are grouped into
+ * {@link SymbolClasses}, so the table only has one column per class.
+ */
+final class DfaCompiler {
+    private final State[] states;
+    private final BitSet endStates;
+    private final int maxStates;
+    private final BitSet[] closures;
+    private final SymbolClasses classes;
+    private final int width;
+
+    private final Map<BitSet, Integer> numbers = new HashMap<>();
+    private final List<BitSet> subsets = new ArrayList<>();
+    private int[] table;
+
+    private DfaCompiler(State[] states, BitSet endStates, int maxStates) {
+        this.states = states;
+        this.endStates = endStates;
+        this.maxStates = maxStates;
+        this.classes = SymbolClasses.of(states);
+        this.width = this.classes.count();
+        this.table = new int[16 * this.width];
+        this.closures = new BitSet[states.length];
+        for (int i = 1; i < states.length; i++) {
+            BitSet closure = states[i].getClosure();
+            if (closure == null) {
+                closure = new BitSet(states.length);
+                closure.set(i);
+            }
+            this.closures[i] = closure;
+        }
+    }
+
+    /**
+     * Compiles a lambda automaton into a minimal deterministic automaton.
+     *
+     * @param states         The states of the automaton, indexed by number.
+     * @param startingStates The numbers of all states where the automaton
+     *                       starts.
+     * @param endStates      The numbers of all final states.
+     * @param maxStates      The maximum number of deterministic states the
+     *                       subset construction may create.
+     * @return The minimal deterministic automaton.
+     * @throws IllegalStateException If the subset construction exceeds
+     *                               {@code maxStates}.
+     */
+    static CompiledAutomaton compile(State[] states, BitSet startingStates,
+                                     BitSet endStates, int maxStates) {
+        DfaCompiler compiler = new DfaCompiler(states, endStates, maxStates);
+        compiler.construct(startingStates);
+        return compiler.minimize();
+    }
+
+    private void construct(BitSet startingStates) {
+        BitSet start = new BitSet(this.states.length);
+        for (int i = startingStates.nextSetBit(0); i >= 0;
+             i = startingStates.nextSetBit(i + 1)) {
+            start.or(this.closures[i]);
+        }
+        number(new BitSet());
+        number(start);
+        for (int q = 0; q < this.subsets.size(); q++) {
+            BitSet subset = this.subsets.get(q);
+            for (int c = 1; c < this.width; c++) {
+                char symbol = this.classes.representative(c);
+                BitSet target = new BitSet(this.states.length);
+                for (int i = subset.nextSetBit(0); i >= 0;
+                     i = subset.nextSetBit(i + 1)) {
+                    for (Transition t
+                            : this.states[i].getTransitions(symbol)) {
+                        target.or(this.closures[t.getTarget().getNumber()]);
+                    }
+                }
+                int number = number(target);
+                this.table[q * this.width + c] = number;
+            }
+        }
+    }
+
+    private int number(BitSet subset) {
+        Integer number = this.numbers.get(subset);
+        if (number != null) {
+            return number;
+        }
+        if (this.subsets.size() >= this.maxStates) {
+            throw new IllegalStateException("Subset construction exceeds "
+                    + this.maxStates + " states.");
+        }
+        number = this.subsets.size();
+        this.subsets.add(subset);
+        this.numbers.put(subset, number);
+        if (this.table.length < this.subsets.size() * this.width) {
+            int[] grown = new int[this.table.length * 2];
+            System.arraycopy(this.table, 0, grown, 0, this.table.length);
+            this.table = grown;
+        }
+        return number;
+    }
+
+    private CompiledAutomaton minimize() {
+        int n = this.subsets.size();
+        int width = this.width;
+        Partition partition = new Partition(n);
+        for (int q = 0; q < n; q++) {
+            if (this.subsets.get(q).intersects(this.endStates)) {
+                partition.mark(q);
+            }
+        }
+        partition.split(0);
+
+        int[] predecessorStart = new int[n * width + 1];
+        for (int q = 0; q < n * width; q++) {
+            ++predecessorStart[this.table[q] * width + q % width + 1];
+        }
+        for (int i = 0; i < n * width; i++) {
+            predecessorStart[i + 1] += predecessorStart[i];
+        }
+        int[] predecessors = new int[n * width];
+        int[] fill = predecessorStart.clone();
+        for (int q = 0; q < n * width; q++) {
+            int key = this.table[q] * width + q % width;
+            predecessors[fill[key]++] = q / width;
+        }
+
+        List<boolean[]> pending = new ArrayList<>();
+        int[] worklist = new int[16];
+        int worklistSize = 0;
+        for (int b = 0; b < partition.blockCount(); b++) {
+            pending.add(new boolean[width]);
+        }
+        int initial = partition.blockCount() == 1 ? 0
+                : partition.size(0) <= partition.size(1) ? 0 : 1;
+        for (int c = 0; c < width; c++) {
+            pending.get(initial)[c] = true;
+            worklist = push(worklist, worklistSize++, initial * width + c);
+        }
+
+        int[] splitter = new int[n];
+        int[] touched = new int[n];
+        while (worklistSize > 0) {
+            int entry = worklist[--worklistSize];
+            int block = entry / width;
+            int c = entry % width;
+            pending.get(block)[c] = false;
+            int splitterSize = partition.copyBlock(block, splitter);
+            int touchedCount = 0;
+            for (int i = 0; i < splitterSize; i++) {
+                int key = splitter[i] * width + c;
+                for (int j = predecessorStart[key];
+                     j < predecessorStart[key + 1]; j++) {
+                    int p = predecessors[j];
+                    int b = partition.blockOf(p);
+                    if (!partition.hasMarks(b)) {
+                        touched[touchedCount++] = b;
+                    }
+                    partition.mark(p);
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int b = touched[i];
+                int created = partition.split(b);
+                if (created < 0) {
+                    continue;
+                }
+                pending.add(new boolean[width]);
+                int smaller = partition.size(created) <= partition.size(b)
+                        ? created : b;
+                for (int d = 0; d < width; d++) {
+                    int add = pending.get(b)[d] ? created : smaller;
+                    if (!pending.get(add)[d]) {
+                        pending.get(add)[d] = true;
+                        worklist = push(worklist, worklistSize++,
+                                add * width + d);
+                    }
+                }
+            }
+        }
+        return build(partition);
+    }
+
+    private CompiledAutomaton build(Partition partition) {
+        int blocks = partition.blockCount();
+        int width = this.width;
+        int[] renumber = new int[blocks];
+        int deadBlock = partition.blockOf(0);
+        int next = 1;
+        for (int q = 0; q < this.subsets.size(); q++) {
+            int b = partition.blockOf(q);
+            if (b != deadBlock && renumber[b] == 0) {
+                renumber[b] = next++;
+            }
+        }
+        int[] minimal = new int[next * width];
+        long[] accepting = new long[(next + 63) / 64];
+        for (int q = 0; q < this.subsets.size(); q++) {
+            int b = partition.blockOf(q);
+            if (b == deadBlock) {
+                continue;
+            }
+            int state = renumber[b];
+            for (int c = 0; c < width; c++) {
+                int target = partition.blockOf(this.table[q * width + c]);
+                minimal[state * width + c] =
+                        target == deadBlock ? 0 : renumber[target];
+            }
+            if (this.subsets.get(q).intersects(this.endStates)) {
+                accepting[state >>> 6] |= 1L << state;
+            }
+        }
+        int start = partition.blockOf(1);
+        return new CompiledAutomaton(minimal, accepting,
+                start == deadBlock ? 0 : renumber[start], this.classes);
+    }
+
+    private static int[] push(int[] array, int index, int value) {
+        if (index == array.length) {
+            int[] grown = new int[array.length * 2];
+            System.arraycopy(array, 0, grown, 0, array.length);
+            array = grown;
+        }
+        array[index] = value;
+        return array;
+    }
+
+    /**
+     * A refinable partition of the states {@code 0, ..., n - 1}. Every block
+     * occupies a contiguous range of an element array, with its marked
+     * elements moved to the front of that range.
+     */
+    private static final class Partition {
+        private final int[] elements;
+        private final int[] location;
+        private final int[] blockOf;
+        private final int[] first;
+        private final int[] end;
+        private final int[] marked;
+        private int blockCount = 1;
+
+        private Partition(int n) {
+            this.elements = new int[n];
+            this.location = new int[n];
+            this.blockOf = new int[n];
+            this.first = new int[n];
+            this.end = new int[n];
+            this.marked = new int[n];
+            for (int i = 0; i < n; i++) {
+                this.elements[i] = i;
+                this.location[i] = i;
+            }
+            this.end[0] = n;
+        }
+
+        private int blockCount() {
+            return this.blockCount;
+        }
+
+        private int blockOf(int element) {
+            return this.blockOf[element];
+        }
+
+        private int size(int block) {
+            return this.end[block] - this.first[block];
+        }
+
+        private boolean hasMarks(int block) {
+            return this.marked[block] > this.first[block];
+        }
+
+        private int copyBlock(int block, int[] target) {
+            int size = size(block);
+            System.arraycopy(this.elements, this.first[block], target, 0,
+                    size);
+            return size;
+        }
+
+        private void mark(int element) {
+            int block = this.blockOf[element];
+            int position = this.location[element];
+            int boundary = Math.max(this.marked[block], this.first[block]);
+            if (position < boundary) {
+                return;
+            }
+            int other = this.elements[boundary];
+            this.elements[position] = other;
+            this.location[other] = position;
+            this.elements[boundary] = element;
+            this.location[element] = boundary;
+            this.marked[block] = boundary + 1;
+        }
+
+        /**
+         * Splits the marked elements of a block into a new block, unless all
+         * or none of them are marked. Clears all marks of the block.
+         *
+         * @return The number of the new block, or {@code -1} if the block
+         * was not split.
+         */
+        private int split(int block) {
+            int boundary = Math.max(this.marked[block], this.first[block]);
+            this.marked[block] = this.first[block];
+            if (boundary == this.first[block] || boundary == this.end[block]) {
+                return -1;
+            }
+            int created = this.blockCount++;
+            this.first[created] = this.first[block];
+            this.end[created] = boundary;
+            this.marked[created] = this.first[created];
+            this.first[block] = boundary;
+            this.marked[block] = boundary;
+            for (int i = this.first[created]; i < boundary; i++) {
+                this.blockOf[this.elements[i]] = created;
+            }
+            return created;
+        }
+    }
+}
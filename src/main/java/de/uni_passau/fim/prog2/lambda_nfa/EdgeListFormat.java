@@ -0,0 +1,267 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Streaming parser for automata stored as plain-text edge lists. The input
+ * consists of lines separated by line breaks, with tokens separated by
+ * spaces or tabs. Empty lines and lines starting with {@code #} are
+ * ignored. The first other line has to be {@code states <n>}, optionally
+ * preceded by {@code alphabet <range> ...} to replace
+ * {@link Alphabet#DEFAULT}. It may be followed by any number of
+ * {@code start <i> ...} and {@code final <i> ...} lines and transition
+ * lines {@code <source> <target> <symbol>}. Ranges and symbols are either
+ * single characters or ranges like {@code 0-9}, e.g.:
+ *
+ * <pre>
+ * alphabet a-z 0-9
+ * states 3
+ * start 1
+ * final 3
+ * 1 2 ~
+ * 2 3 a
+ * 3 3 0-9
+ * </pre>
+ *
+ * The input is read in large blocks and tokenized by hand, so only header
+ * lines allocate objects. {@link #readOffHeap(Path)} passes the transitions
+ * straight to an {@link OffHeapAutomaton.Builder}, so the automaton never
+ * exists on the heap.
+ */
+public final class EdgeListFormat {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private long line = 1;
+
+    private EdgeListFormat(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads an automaton from a file.
+     *
+     * @param file The file containing the edge list, encoded in UTF-8.
+     * @return The automaton.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    public static LambdaNFA read(Path file) throws IOException {
+        return read(file, LambdaNFA.Builder::new, LambdaNFA.Builder::build);
+    }
+
+    /**
+     * Reads an automaton from a file into off-heap memory. The transitions
+     * are written to off-heap memory while they are read, and the heap
+     * memory needed does not grow with the size of the automaton.
+     *
+     * @param file The file containing the edge list, encoded in UTF-8.
+     * @return The automaton, which has to be closed.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    public static OffHeapAutomaton readOffHeap(Path file) throws IOException {
+        return read(file, OffHeapAutomaton.Builder::new,
+                OffHeapAutomaton.Builder::build);
+    }
+
+    /**
+     * Reads an edge list into a builder, which is returned without calling
+     * {@link LambdaNFA.Builder#build()}. The reader is not closed.
+     *
+     * @param reader The source of the edge list.
+     * @return A builder containing all states and transitions.
+     * @throws IOException If the input cannot be read or is malformed.
+     */
+    public static LambdaNFA.Builder read(Reader reader) throws IOException {
+        return new EdgeListFormat(reader).parse(LambdaNFA.Builder::new);
+    }
+
+    private static <B extends AutomatonBuilder, A> A read(Path file,
+            BiFunction<Integer, Alphabet, B> builder, Function<B, A> build)
+            throws IOException {
+        try (Reader reader = Files.newBufferedReader(file,
+                StandardCharsets.UTF_8)) {
+            return build.apply(new EdgeListFormat(reader).parse(builder));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private <B extends AutomatonBuilder> B parse(
+            BiFunction<Integer, Alphabet, B> builders) throws IOException {
+        try {
+            return parseLines(builders);
+        } catch (IllegalArgumentException e) {
+            throw error(e.getMessage());
+        }
+    }
+
+    private <B extends AutomatonBuilder> B parseLines(
+            BiFunction<Integer, Alphabet, B> builders) throws IOException {
+        B builder = null;
+        Alphabet alphabet = null;
+        while (skipBlankLines()) {
+            int c = peek();
+            if (Character.isLetter(c)) {
+                String keyword = readKeyword();
+                if (keyword.equals("alphabet")) {
+                    if (builder != null || alphabet != null) {
+                        throw error("Alphabet has to be given once, before "
+                                + "the number of states.");
+                    }
+                    do {
+                        int range = readRange();
+                        Alphabet next = Alphabet.range((char) (range >>> 16),
+                                (char) range);
+                        alphabet = alphabet == null ? next
+                                : alphabet.union(next);
+                    } while (hasToken());
+                } else if (keyword.equals("states")) {
+                    if (builder != null) {
+                        throw error("Number of states given twice.");
+                    }
+                    builder = builders.apply(readInt(),
+                            alphabet == null ? Alphabet.DEFAULT : alphabet);
+                } else if (builder == null) {
+                    throw error("Expected number of states.");
+                } else if (keyword.equals("start")) {
+                    do {
+                        builder.addStartingState(readInt());
+                    } while (hasToken());
+                } else if (keyword.equals("final")) {
+                    do {
+                        builder.addEndState(readInt());
+                    } while (hasToken());
+                } else {
+                    throw error("Unknown keyword " + keyword + ".");
+                }
+            } else if (builder == null) {
+                throw error("Expected number of states.");
+            } else {
+                int source = readInt();
+                int target = readInt();
+                int range = readRange();
+                builder.addTransition(source, target, (char) (range >>> 16),
+                        (char) range);
+            }
+            if (hasToken()) {
+                throw error("Unexpected token.");
+            }
+        }
+        if (builder == null) {
+            throw error("Expected number of states.");
+        }
+        return builder;
+    }
+
+    private boolean skipBlankLines() throws IOException {
+        while (true) {
+            skipSpaces();
+            int c = peek();
+            if (c == '#') {
+                while (c != '\n' && c != -1) {
+                    ++this.position;
+                    c = peek();
+                }
+            }
+            if (c == -1) {
+                return false;
+            } else if (c == '\n') {
+                ++this.position;
+                ++this.line;
+            } else {
+                return true;
+            }
+        }
+    }
+
+    private boolean hasToken() throws IOException {
+        skipSpaces();
+        int c = peek();
+        return c != '\n' && c != -1;
+    }
+
+    private String readKeyword() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (Character.isLetter(peek())) {
+            sb.append(this.buffer[this.position++]);
+        }
+        return sb.toString();
+    }
+
+    private int readInt() throws IOException {
+        skipSpaces();
+        int c = peek();
+        if (c < '0' || c > '9') {
+            throw error("Expected a number.");
+        }
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            value = 10 * value + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw error("Number too large.");
+            }
+            ++this.position;
+            c = peek();
+        }
+        return (int) value;
+    }
+
+    private int readRange() throws IOException {
+        skipSpaces();
+        int first = peek();
+        if (isDelimiter(first)) {
+            throw error("Expected a symbol.");
+        }
+        ++this.position;
+        int last = first;
+        if (peek() == '-') {
+            ++this.position;
+            last = peek();
+            if (isDelimiter(last)) {
+                throw error("Expected the end of the range.");
+            }
+            ++this.position;
+        }
+        if (!isDelimiter(peek())) {
+            throw error("Symbol has to be a single character or a range.");
+        }
+        return first << 16 | last;
+    }
+
+    private static boolean isDelimiter(int c) {
+        return c == -1 || c == '\n' || c == ' ' || c == '\t' || c == '\r';
+    }
+
+    private void skipSpaces() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r') {
+            ++this.position;
+            c = peek();
+        }
+    }
+
+    private int peek() throws IOException {
+        if (this.position == this.limit) {
+            this.limit = this.reader.read(this.buffer);
+            this.position = 0;
+            if (this.limit <= 0) {
+                this.limit = 0;
+                return -1;
+            }
+        }
+        return this.buffer[this.position];
+    }
+
+    private IOException error(String message) {
+        return new IOException("Line " + this.line + ": " + message);
+    }
+}
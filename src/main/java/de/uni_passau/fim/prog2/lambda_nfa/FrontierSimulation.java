@@ -0,0 +1,380 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Simulation engine running a word through a lambda automaton. The set of
+ * active states is kept as a bitset indexed by state number, so every state
+ * is expanded at most once per symbol and a single step needs O(n + m) time
+ * for n states and m transitions. States from which no final state can be
+ * reached are dropped from the active set, so a simulation ends as soon as
+ * the word can no longer be accepted. Whole words are run on a
+ * {@link BitParallelSimulation} instead if the automaton is small enough.
+ */
+final class FrontierSimulation {
+    private final State[] states;
+    private final BitSet startingStates;
+    private final BitSet endStates;
+    private boolean lambdaFree = true;
+    private volatile BitSet liveStates = null;
+    private volatile BitParallelSimulation bitParallel = null;
+    private int[][] predecessors = null;
+    private int[] predecessorCounts = null;
+
+    /**
+     * General purpose constructor for the simulation. The arrays and sets
+     * are not copied, so later changes to the automaton are visible.
+     *
+     * @param states         The states of the automaton, indexed by number.
+     * @param startingStates The numbers of all states where the simulation
+     *                       starts.
+     * @param endStates      The numbers of all final states.
+     */
+    FrontierSimulation(State[] states, BitSet startingStates,
+                       BitSet endStates) {
+        this.states = states;
+        this.startingStates = startingStates;
+        this.endStates = endStates;
+    }
+
+    /**
+     * Computes the length of the longest prefix of {@code word} accepted by
+     * the automaton.
+     *
+     * @param word The word whose prefixes will be checked.
+     * @return The length of the longest accepted prefix, or {@code -1} if
+     * there is none.
+     */
+    int longestPrefixLength(CharSequence word) {
+        BitParallelSimulation small = bitParallel();
+        if (small != null) {
+            return small.longestPrefixLength(word);
+        }
+        BitSet active = new BitSet(this.states.length);
+        BitSet next = new BitSet(this.states.length);
+        int[] worklist = new int[this.states.length];
+        start(active, worklist);
+        int length = active.intersects(this.endStates) ? 0 : -1;
+        for (int i = 0; i < word.length() && !active.isEmpty(); i++) {
+            step(active, word.charAt(i), next, worklist);
+            BitSet swap = active;
+            active = next;
+            next = swap;
+            if (active.intersects(this.endStates)) {
+                length = i + 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Decides whether the automaton accepts {@code word} as a whole.
+     *
+     * @param word The word to check.
+     * @return {@code true} if and only if {@code word} is accepted.
+     */
+    boolean accepts(CharSequence word) {
+        BitParallelSimulation small = bitParallel();
+        if (small != null) {
+            return small.accepts(word);
+        }
+        BitSet active = new BitSet(this.states.length);
+        BitSet next = new BitSet(this.states.length);
+        int[] worklist = new int[this.states.length];
+        start(active, worklist);
+        for (int i = 0; i < word.length(); i++) {
+            step(active, word.charAt(i), next, worklist);
+            if (next.isEmpty()) {
+                return false;
+            }
+            BitSet swap = active;
+            active = next;
+            next = swap;
+        }
+        return active.intersects(this.endStates);
+    }
+
+    /**
+     * Computes the set of states active before reading any symbol, i.e., the
+     * starting states together with their lambda closures.
+     *
+     * @return A new set containing the active state numbers.
+     */
+    BitSet initialSet() {
+        BitSet active = new BitSet(this.states.length);
+        start(active, new int[this.states.length]);
+        return active;
+    }
+
+    /**
+     * Computes the set of states active after reading {@code symbol} in one
+     * of the {@code active} states, including lambda closures.
+     *
+     * @param active The currently active state numbers.
+     * @param symbol The symbol to be read.
+     * @return A new set containing the successor state numbers.
+     */
+    BitSet successors(BitSet active, char symbol) {
+        BitSet next = new BitSet(this.states.length);
+        step(active, symbol, next, new int[this.states.length]);
+        return next;
+    }
+
+    /**
+     * Checks whether a set of active states contains a final state.
+     *
+     * @param active The active state numbers.
+     * @return {@code true} if and only if one of the states is final.
+     */
+    boolean isAccepting(BitSet active) {
+        return active.intersects(this.endStates);
+    }
+
+    /**
+     * Getter for the size of the buffers the simulation needs, i.e., the
+     * largest state number plus one.
+     *
+     * @return The capacity for bitsets and worklists passed to this
+     * simulation.
+     */
+    int capacity() {
+        return this.states.length;
+    }
+
+    /**
+     * Has to be called once the automaton contains a lambda transition.
+     * Until then, lambda closures are skipped, so a step of a lambda-free
+     * automaton is a single successor lookup per active state.
+     */
+    void lambdaTransitionAdded() {
+        this.lambdaFree = false;
+    }
+
+    /**
+     * Has to be called whenever a transition is added to the automaton.
+     * Adding a transition can only make more states live. If it leads from
+     * a dead state to a live one, the source and all states reaching it
+     * become live, which is found by a backwards search from the source
+     * alone. The predecessors this search needs are collected over all
+     * transitions the first time, and kept up to date from then on.
+     *
+     * @param source The number of the source state.
+     * @param target The number of the target state.
+     */
+    void transitionAdded(int source, int target) {
+        this.bitParallel = null;
+        if (this.predecessors != null) {
+            addPredecessor(target, source);
+        }
+        BitSet live = this.liveStates;
+        if (live == null || !live.get(target) || live.get(source)) {
+            return;
+        }
+        if (this.predecessors == null) {
+            collectPredecessors();
+        }
+        live = (BitSet) live.clone();
+        int[] queue = new int[16];
+        int size = 0;
+        live.set(source);
+        queue[size++] = source;
+        for (int head = 0; head < size; head++) {
+            int state = queue[head];
+            for (int j = 0; j < this.predecessorCounts[state]; j++) {
+                int predecessor = this.predecessors[state][j];
+                if (!live.get(predecessor)) {
+                    live.set(predecessor);
+                    if (size == queue.length) {
+                        queue = Arrays.copyOf(queue, 2 * size);
+                    }
+                    queue[size++] = predecessor;
+                }
+            }
+        }
+        this.liveStates = live;
+    }
+
+    /**
+     * Getter for the live states of the automaton, i.e., the states from
+     * which a final state can be reached. Computed on first use by a
+     * backwards breadth first search from the final states over all
+     * transitions, in O(n + m) time, and extended as transitions are added.
+     *
+     * @return The numbers of all live states. Must not be modified.
+     */
+    BitSet liveStates() {
+        BitSet live = this.liveStates;
+        if (live == null) {
+            live = computeLiveStates();
+            this.liveStates = live;
+        }
+        return live;
+    }
+
+    /**
+     * Getter for the bit-parallel engine of the automaton in its current
+     * form, which is built on first use after a change.
+     *
+     * @return The engine, or {@code null} if the automaton has more than
+     * {@link BitParallelSimulation#MAX_STATES} states.
+     */
+    BitParallelSimulation bitParallel() {
+        if (this.states.length - 1 > BitParallelSimulation.MAX_STATES) {
+            return null;
+        }
+        BitParallelSimulation small = this.bitParallel;
+        if (small == null) {
+            small = BitParallelSimulation.of(this.states,
+                    this.startingStates, this.endStates, liveStates());
+            this.bitParallel = small;
+        }
+        return small;
+    }
+
+    /**
+     * Computes the symbol classes of the automaton in its current form.
+     *
+     * @return The symbol classes.
+     */
+    SymbolClasses symbolClasses() {
+        return SymbolClasses.of(this.states);
+    }
+
+    /**
+     * Resets {@code active} to the starting states together with their
+     * lambda closures, without allocating.
+     *
+     * @param active   The set to be overwritten.
+     * @param worklist Scratch buffer of at least {@link #capacity()} entries.
+     */
+    void start(BitSet active, int[] worklist) {
+        active.clear();
+        active.or(this.startingStates);
+        if (!this.lambdaFree) {
+            closeOverLambda(active, worklist);
+        }
+        active.and(liveStates());
+    }
+
+    /**
+     * Overwrites {@code next} with the states active after reading
+     * {@code symbol} in one of the {@code active} states, including lambda
+     * closures, without allocating.
+     *
+     * @param active   The currently active state numbers.
+     * @param symbol   The symbol to be read.
+     * @param next     The set to be overwritten.
+     * @param worklist Scratch buffer of at least {@link #capacity()} entries.
+     */
+    void step(BitSet active, char symbol, BitSet next, int[] worklist) {
+        next.clear();
+        if (symbol == LambdaNFA.LAMBDA_SYMBOL) {
+            return;
+        }
+        for (int i = active.nextSetBit(0); i >= 0;
+             i = active.nextSetBit(i + 1)) {
+            List<Transition> transitions =
+                    this.states[i].getTransitionList(symbol);
+            for (int j = 0; j < transitions.size(); j++) {
+                next.set(transitions.get(j).getTarget().getNumber());
+            }
+        }
+        if (!this.lambdaFree) {
+            closeOverLambda(next, worklist);
+        }
+        next.and(liveStates());
+        if (Statistics.enabled) {
+            Statistics.recordStep(active.cardinality(), next.cardinality());
+        }
+    }
+
+    private void closeOverLambda(BitSet set, int[] worklist) {
+        int size = 0;
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            worklist[size++] = i;
+        }
+        while (size > 0) {
+            List<Transition> transitions =
+                    this.states[worklist[--size]].getLambdaTransitions();
+            for (int j = 0; j < transitions.size(); j++) {
+                int target = transitions.get(j).getTarget().getNumber();
+                if (!set.get(target)) {
+                    set.set(target);
+                    worklist[size++] = target;
+                }
+            }
+        }
+    }
+
+    private void collectPredecessors() {
+        this.predecessors = new int[this.states.length][];
+        this.predecessorCounts = new int[this.states.length];
+        for (int s = 1; s < this.states.length; s++) {
+            for (Transition t : this.states[s].getLambdaTransitions()) {
+                addPredecessor(t.getTarget().getNumber(), s);
+            }
+            for (Transition t : this.states[s].getSymbolTransitions()) {
+                addPredecessor(t.getTarget().getNumber(), s);
+            }
+        }
+    }
+
+    private void addPredecessor(int state, int predecessor) {
+        int count = this.predecessorCounts[state];
+        int[] list = this.predecessors[state];
+        if (list == null) {
+            list = new int[2];
+            this.predecessors[state] = list;
+        } else if (count == list.length) {
+            list = Arrays.copyOf(list, 2 * count);
+            this.predecessors[state] = list;
+        }
+        list[count] = predecessor;
+        this.predecessorCounts[state] = count + 1;
+    }
+
+    private BitSet computeLiveStates() {
+        int[] offsets = new int[this.states.length + 1];
+        for (int s = 1; s < this.states.length; s++) {
+            for (Transition t : this.states[s].getLambdaTransitions()) {
+                ++offsets[t.getTarget().getNumber() + 1];
+            }
+            for (Transition t : this.states[s].getSymbolTransitions()) {
+                ++offsets[t.getTarget().getNumber() + 1];
+            }
+        }
+        for (int s = 1; s <= this.states.length; s++) {
+            offsets[s] += offsets[s - 1];
+        }
+        int[] fill = Arrays.copyOf(offsets, this.states.length);
+        int[] predecessors = new int[offsets[this.states.length]];
+        for (int s = 1; s < this.states.length; s++) {
+            for (Transition t : this.states[s].getLambdaTransitions()) {
+                predecessors[fill[t.getTarget().getNumber()]++] = s;
+            }
+            for (Transition t : this.states[s].getSymbolTransitions()) {
+                predecessors[fill[t.getTarget().getNumber()]++] = s;
+            }
+        }
+
+        BitSet live = (BitSet) this.endStates.clone();
+        int[] queue = new int[this.states.length];
+        int size = 0;
+        for (int s = live.nextSetBit(0); s >= 0; s = live.nextSetBit(s + 1)) {
+            queue[size++] = s;
+        }
+        for (int head = 0; head < size; head++) {
+            int state = queue[head];
+            for (int j = offsets[state]; j < offsets[state + 1]; j++) {
+                int predecessor = predecessors[j];
+                if (!live.get(predecessor)) {
+                    live.set(predecessor);
+                    queue[size++] = predecessor;
+                }
+            }
+        }
+        return live;
+    }
+}
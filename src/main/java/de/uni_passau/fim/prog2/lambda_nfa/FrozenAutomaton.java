@@ -0,0 +1,388 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable lambda automaton stored in compressed sparse row layout.
+ * For every state, the alphabet is cut into sorted, disjoint symbol ranges,
+ * whose targets are stored inside one primitive array, so reading a symbol
+ * is a binary search over the ranges of each active state. The lambda
+ * closures of all states are stored the same way. Queries run directly on
+ * these arrays.
+ */
+public final class FrozenAutomaton implements Automaton {
+    private final int stateCount;
+    private final int[] startingStates;
+    private final long[] endStates;
+    private final int[] rangeOffsets;
+    private final char[] rangeStarts;
+    private final int[] targetOffsets;
+    private final int[] targets;
+    private final int[] closureOffsets;
+    private final int[] closures;
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final char[] edgeSymbols;
+
+    /**
+     * General purpose constructor for the frozen automaton. The arrays are
+     * not copied and may not be modified afterwards.
+     *
+     * @param stateCount     The number of states, numbered from 1.
+     * @param startingStates The numbers of all states where the automaton
+     *                       starts.
+     * @param endStates      A bitmap containing the final states.
+     * @param rangeOffsets   The symbol ranges of state {@code s} start at
+     *                       {@code rangeOffsets[s]} inside
+     *                       {@code rangeStarts}.
+     * @param rangeStarts    The first symbol of every range. Each range ends
+     *                       before the next range of the same state starts.
+     * @param targetOffsets  The targets of range {@code r} start at
+     *                       {@code targetOffsets[r]} inside {@code targets}.
+     * @param targets        The target states of all ranges.
+     * @param closureOffsets The lambda closure of state {@code s} starts at
+     *                       {@code closureOffsets[s]} inside
+     *                       {@code closures}.
+     * @param closures       The lambda closures of all states, each including
+     *                       the state itself.
+     * @param edgeOffsets    The transitions of state {@code s} start at
+     *                       {@code edgeOffsets[s]} inside
+     *                       {@code edgeTargets}, in the order they are
+     *                       printed.
+     * @param edgeTargets    The target states of all transitions.
+     * @param edgeSymbols    The first and last symbol of every transition,
+     *                       stored at twice its index and the following
+     *                       index.
+     */
+    FrozenAutomaton(int stateCount, int[] startingStates, long[] endStates,
+                    int[] rangeOffsets, char[] rangeStarts,
+                    int[] targetOffsets, int[] targets, int[] closureOffsets,
+                    int[] closures, int[] edgeOffsets, int[] edgeTargets,
+                    char[] edgeSymbols) {
+        this.stateCount = stateCount;
+        this.startingStates = startingStates;
+        this.endStates = endStates;
+        this.rangeOffsets = rangeOffsets;
+        this.rangeStarts = rangeStarts;
+        this.targetOffsets = targetOffsets;
+        this.targets = targets;
+        this.closureOffsets = closureOffsets;
+        this.closures = closures;
+        this.edgeOffsets = edgeOffsets;
+        this.edgeTargets = edgeTargets;
+        this.edgeSymbols = edgeSymbols;
+    }
+
+    /**
+     * Freezes the given states into the compressed layout.
+     *
+     * @param states         The states of the automaton, indexed by number.
+     * @param startingStates The numbers of all states where the automaton
+     *                       starts.
+     * @param endStates      The numbers of all final states.
+     * @return The frozen automaton.
+     */
+    static FrozenAutomaton of(State[] states, BitSet startingStates,
+                              BitSet endStates) {
+        int n = states.length - 1;
+        int[] rangeOffsets = new int[states.length + 1];
+        int[] closureOffsets = new int[states.length + 1];
+        int[] edgeOffsets = new int[states.length + 1];
+        IntList rangeStarts = new IntList();
+        IntList targetOffsets = new IntList();
+        IntList targets = new IntList();
+        IntList closures = new IntList();
+        IntList edgeTargets = new IntList();
+        IntList edgeSymbols = new IntList();
+        for (int s = 1; s <= n; s++) {
+            rangeOffsets[s] = rangeStarts.size;
+            Collection<Transition> symbolTransitions =
+                    states[s].getSymbolTransitions();
+            int[] bounds = new int[2 * symbolTransitions.size()];
+            int count = 0;
+            for (Transition t : symbolTransitions) {
+                bounds[count++] = t.getSymbol();
+                bounds[count++] = t.getLastSymbol() + 1;
+            }
+            Arrays.sort(bounds);
+            for (int i = 0; i < count; i++) {
+                if (i > 0 && bounds[i] == bounds[i - 1]
+                        || bounds[i] > Character.MAX_VALUE) {
+                    continue;
+                }
+                rangeStarts.add(bounds[i]);
+                targetOffsets.add(targets.size);
+                int start = targets.size;
+                for (Transition t : symbolTransitions) {
+                    if (t.accepts((char) bounds[i])) {
+                        targets.add(t.getTarget().getNumber());
+                    }
+                }
+                Arrays.sort(targets.values, start, targets.size);
+            }
+
+            closureOffsets[s] = closures.size;
+            closures.add(s);
+            BitSet closure = states[s].getClosure();
+            if (closure != null) {
+                for (int i = closure.nextSetBit(0); i >= 0;
+                     i = closure.nextSetBit(i + 1)) {
+                    if (i != s) {
+                        closures.add(i);
+                    }
+                }
+            }
+
+            edgeOffsets[s] = edgeTargets.size;
+            List<Transition> edges = new ArrayList<>(
+                    states[s].getTransitions(LambdaNFA.LAMBDA_SYMBOL));
+            edges.addAll(symbolTransitions);
+            Collections.sort(edges);
+            for (Transition t : edges) {
+                edgeTargets.add(t.getTarget().getNumber());
+                edgeSymbols.add(t.getSymbol());
+                edgeSymbols.add(t.getLastSymbol());
+            }
+        }
+        rangeOffsets[states.length] = rangeStarts.size;
+        targetOffsets.add(targets.size);
+        closureOffsets[states.length] = closures.size;
+        edgeOffsets[states.length] = edgeTargets.size;
+
+        char[] starts = new char[rangeStarts.size];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = (char) rangeStarts.values[i];
+        }
+        char[] symbols = new char[edgeSymbols.size];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = (char) edgeSymbols.values[i];
+        }
+        long[] finals = new long[(states.length + 63) / 64];
+        for (int s = endStates.nextSetBit(0); s >= 0;
+             s = endStates.nextSetBit(s + 1)) {
+            finals[s >>> 6] |= 1L << s;
+        }
+        return new FrozenAutomaton(n, startingStates.stream().toArray(),
+                finals, rangeOffsets, starts, targetOffsets.toArray(),
+                targets.toArray(), closureOffsets, closures.toArray(),
+                edgeOffsets, edgeTargets.toArray(), symbols);
+    }
+
+    /**
+     * Checks a transition on validity. Since the automaton is immutable, no
+     * transition can be added to it.
+     *
+     * @param source The id of the source state.
+     * @param target The id of the target state.
+     * @param symbol The symbol to be read.
+     * @return Always {@code false}.
+     */
+    @Override
+    public boolean isValidTransition(int source, int target, char symbol) {
+        return false;
+    }
+
+    /**
+     * Not supported, since the automaton is immutable.
+     *
+     * @param source The source state.
+     * @param target The target state.
+     * @param symbol The symbol to read.
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void addTransition(int source, int target, char symbol) {
+        throw new UnsupportedOperationException(
+                "Frozen automata may not be modified.");
+    }
+
+    /**
+     * Decides the element problem for the regular language defined by this
+     * automaton.
+     *
+     * @param word The word to check.
+     * @return {@code true} if and only if {@code word} is in the language.
+     */
+    @Override
+    public boolean isElement(String word) {
+        return run(word, true) == word.length();
+    }
+
+    /**
+     * Computes the longest prefix of {@code word} which is an element of the
+     * language. Can be the {@code word} itself, if and only if
+     * {@link Automaton#isElement(String)} called on it returns {@code true}.
+     *
+     * @param word The word whose prefixes will be checked.
+     * @return The longest prefix, or {@code null} if none exists.
+     */
+    @Override
+    public String longestPrefix(String word) {
+        int length = run(word, false);
+        if (length < 0) {
+            return null;
+        }
+        return word.substring(0, length);
+    }
+
+    /**
+     * Estimates the number of bytes this automaton occupies on the heap of
+     * a 64-bit virtual machine with compressed object pointers.
+     *
+     * @return The estimated size in bytes.
+     */
+    public long estimateHeapSize() {
+        return 64 + arraySize(this.endStates.length, 8)
+                + arraySize(this.startingStates.length, 4)
+                + arraySize(this.rangeOffsets.length, 4)
+                + arraySize(this.rangeStarts.length, 2)
+                + arraySize(this.targetOffsets.length, 4)
+                + arraySize(this.targets.length, 4)
+                + arraySize(this.closureOffsets.length, 4)
+                + arraySize(this.closures.length, 4)
+                + arraySize(this.edgeOffsets.length, 4)
+                + arraySize(this.edgeTargets.length, 4)
+                + arraySize(this.edgeSymbols.length, 2);
+    }
+
+    /**
+     * Generates a string representation of the automaton.
+     *
+     * @return A string including all transitions in the automaton.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int s = 1; s <= this.stateCount; s++) {
+            for (int j = this.edgeOffsets[s]; j < this.edgeOffsets[s + 1];
+                 j++) {
+                char first = this.edgeSymbols[2 * j];
+                char last = this.edgeSymbols[2 * j + 1];
+                sb.append("(").append(s).append(", ")
+                        .append(this.edgeTargets[j]).append(") ");
+                if (first == last) {
+                    sb.append(first);
+                } else {
+                    sb.append('[').append(first).append('-').append(last)
+                            .append(']');
+                }
+                sb.append(System.lineSeparator());
+            }
+        }
+        return sb.toString();
+    }
+
+    private int run(String word, boolean wholeWord) {
+        long[] active = new long[this.endStates.length];
+        long[] next = new long[this.endStates.length];
+        int[] activeList = new int[this.stateCount];
+        int[] nextList = new int[this.stateCount];
+        int activeCount = 0;
+        for (int state : this.startingStates) {
+            activeCount = addClosure(state, active, activeList, activeCount);
+        }
+        int length = isAccepting(active) ? 0 : -1;
+        for (int i = 0; i < word.length() && activeCount > 0; i++) {
+            char symbol = word.charAt(i);
+            int nextCount = 0;
+            for (int k = 0; k < activeCount; k++) {
+                int range = findRange(activeList[k], symbol);
+                if (range < 0) {
+                    continue;
+                }
+                for (int j = this.targetOffsets[range];
+                     j < this.targetOffsets[range + 1]; j++) {
+                    int target = this.targets[j];
+                    if ((next[target >>> 6] & (1L << target)) == 0) {
+                        nextCount = addClosure(target, next, nextList,
+                                nextCount);
+                    }
+                }
+            }
+            for (int k = 0; k < activeCount; k++) {
+                active[activeList[k] >>> 6] = 0;
+            }
+            long[] swap = active;
+            active = next;
+            next = swap;
+            int[] swapList = activeList;
+            activeList = nextList;
+            nextList = swapList;
+            activeCount = nextCount;
+            if (isAccepting(active)) {
+                length = i + 1;
+            } else if (wholeWord && activeCount == 0) {
+                return -1;
+            }
+        }
+        if (wholeWord) {
+            return isAccepting(active) ? word.length() : -1;
+        }
+        return length;
+    }
+
+    private int addClosure(int state, long[] set, int[] list, int count) {
+        for (int j = this.closureOffsets[state];
+             j < this.closureOffsets[state + 1]; j++) {
+            int member = this.closures[j];
+            long bit = 1L << member;
+            if ((set[member >>> 6] & bit) == 0) {
+                set[member >>> 6] |= bit;
+                list[count++] = member;
+            }
+        }
+        return count;
+    }
+
+    private boolean isAccepting(long[] set) {
+        for (int i = 0; i < set.length; i++) {
+            if ((set[i] & this.endStates[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int findRange(int state, char symbol) {
+        int low = this.rangeOffsets[state];
+        int high = this.rangeOffsets[state + 1] - 1;
+        int first = low;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (this.rangeStarts[middle] <= symbol) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high >= first ? high : -1;
+    }
+
+    private static long arraySize(int length, int elementSize) {
+        return (16 + (long) length * elementSize + 7) & ~7L;
+    }
+
+    /**
+     * A growable list of primitive integers used while freezing.
+     */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size = 0;
+
+        private void add(int value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, 2 * this.size);
+            }
+            this.values[this.size++] = value;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(this.values, this.size);
+        }
+    }
+}
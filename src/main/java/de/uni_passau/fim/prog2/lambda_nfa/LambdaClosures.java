@@ -0,0 +1,130 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Computes the lambda closures of all states of an automaton at once. The
+ * strongly connected components of the lambda transitions are found with
+ * Tarjan's algorithm, which completes every component only after all
+ * components reachable from it. The closure of a component is thus the
+ * union of its members and the closures of its direct successors, and it is
+ * shared by all members. Needs O(n + m) steps plus the bitset unions.
+ */
+final class LambdaClosures {
+    private final State[] states;
+    private final int[] index;
+    private final int[] lowLink;
+    private final int[] component;
+    private final int[] stack;
+    private final int[] callStack;
+    private final int[] nextEdge;
+    private int stackSize = 0;
+    private int counter = 0;
+    private int componentCount = 0;
+
+    private LambdaClosures(State[] states) {
+        this.states = states;
+        this.index = new int[states.length];
+        this.lowLink = new int[states.length];
+        this.component = new int[states.length];
+        this.stack = new int[states.length];
+        this.callStack = new int[states.length];
+        this.nextEdge = new int[states.length];
+    }
+
+    /**
+     * Computes the lambda closures of all states and saves them inside the
+     * states, replacing the previous ones.
+     *
+     * @param states The states of the automaton, indexed by number.
+     */
+    static void compute(State[] states) {
+        ClosureEvent event = Statistics.beginClosure();
+        LambdaClosures closures = new LambdaClosures(states);
+        for (int s = 1; s < states.length; s++) {
+            if (closures.index[s] == 0) {
+                closures.visit(s);
+            }
+        }
+        if (event != null) {
+            Statistics.endClosure(event, "all", states.length - 1);
+        }
+    }
+
+    private void visit(int root) {
+        int depth = 0;
+        enter(root);
+        this.callStack[depth++] = root;
+        while (depth > 0) {
+            int v = this.callStack[depth - 1];
+            List<Transition> edges = this.states[v].getLambdaTransitions();
+            if (this.nextEdge[v] < edges.size()) {
+                int w = edges.get(this.nextEdge[v]++).getTarget().getNumber();
+                if (this.index[w] == 0) {
+                    enter(w);
+                    this.callStack[depth++] = w;
+                } else if (this.component[w] == 0) {
+                    this.lowLink[v] = Math.min(this.lowLink[v],
+                            this.index[w]);
+                }
+                continue;
+            }
+            --depth;
+            if (this.lowLink[v] == this.index[v]) {
+                complete(v);
+            }
+            if (depth > 0) {
+                int parent = this.callStack[depth - 1];
+                this.lowLink[parent] = Math.min(this.lowLink[parent],
+                        this.lowLink[v]);
+            }
+        }
+    }
+
+    private void enter(int v) {
+        this.index[v] = ++this.counter;
+        this.lowLink[v] = this.counter;
+        this.stack[this.stackSize++] = v;
+    }
+
+    private void complete(int root) {
+        int id = ++this.componentCount;
+        int first = this.stackSize;
+        do {
+            --first;
+            this.component[this.stack[first]] = id;
+        } while (this.stack[first] != root);
+
+        BitSet closure = null;
+        if (this.stackSize - first > 1) {
+            closure = new BitSet(this.states.length);
+        }
+        for (int i = first; i < this.stackSize; i++) {
+            int member = this.stack[i];
+            for (Transition t : this.states[member].getLambdaTransitions()) {
+                State target = t.getTarget();
+                if (this.component[target.getNumber()] == id) {
+                    continue;
+                }
+                if (closure == null) {
+                    closure = new BitSet(this.states.length);
+                    closure.set(member);
+                }
+                BitSet reached = target.getClosure();
+                if (reached == null) {
+                    closure.set(target.getNumber());
+                } else {
+                    closure.or(reached);
+                }
+            }
+            if (closure != null) {
+                closure.set(member);
+            }
+        }
+        for (int i = first; i < this.stackSize; i++) {
+            this.states[this.stack[i]].setClosure(closure);
+        }
+        this.stackSize = first;
+    }
+}
@@ -1,12 +1,16 @@
 package de.uni_passau.fim.prog2.lambda_nfa;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Objects;
-import java.util.Queue;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * A nondeterministic implementation for an automaton including lambda
@@ -19,14 +23,22 @@ public class LambdaNFA implements Automaton {
      */
     public static final char LAMBDA_SYMBOL = '~';
     /**
-     * The length of the automaton's alphabet. Calculated by finding the
+     * The length of the default alphabet. Calculated by finding the
      * interval length between the first and last symbol in the alphabet.
      */
     public static final int ALPHABET_LENGTH = LAST_SYMBOL - FIRST_SYMBOL + 1;
+    /**
+     * The maximum number of deterministic states {@link LambdaNFA#compile()}
+     * may create before aborting.
+     */
+    public static final int DEFAULT_COMPILE_LIMIT = 1 << 16;
 
+    private final Alphabet alphabet;
     private final State[] states;
-    private final State startingState;
-    private final List<State> endStates;
+    private final BitSet startingStates;
+    private final BitSet endStates;
+    private final FrontierSimulation simulation;
+    private final DfaCache<Boolean> cache;
 
     /**
      * General purpose constructor for the lambda automaton. Will initialize
@@ -40,16 +52,44 @@ public class LambdaNFA implements Automaton {
      */
     public LambdaNFA(int stateCount, int startingState,
                      List<Integer> endStates) {
+        this(stateCount, startingState, endStates, Alphabet.DEFAULT);
+    }
+
+    /**
+     * Constructor for a lambda automaton over a custom alphabet, e.g.,
+     * {@link Alphabet#UNICODE}.
+     *
+     * @param stateCount    Number of states to automaton should consist of.
+     * @param startingState The number of the state where the automaton starts.
+     * @param endStates     A list of numbers describing which states should be
+     *                      the final states of the automaton.
+     * @param alphabet      The symbols transitions may read.
+     * @throws IllegalArgumentException If {@code alphabet} contains
+     *                                  {@link LambdaNFA#LAMBDA_SYMBOL}.
+     */
+    public LambdaNFA(int stateCount, int startingState,
+                     List<Integer> endStates, Alphabet alphabet) {
+        this(stateCount, bitSetOf(List.of(startingState)),
+                bitSetOf(endStates), alphabet);
+    }
+
+    private LambdaNFA(int stateCount, BitSet startingStates,
+                      BitSet endStates, Alphabet alphabet) {
+        if (alphabet.contains(LAMBDA_SYMBOL)) {
+            throw new IllegalArgumentException("Alphabet may not contain "
+                    + LAMBDA_SYMBOL + ".");
+        }
+        this.alphabet = alphabet;
         this.states = new State[stateCount + 1];
         this.states[0] = null;
         for (int i = 1; i <= stateCount; i++) {
             this.states[i] = new State(i);
         }
-        this.startingState = this.states[startingState];
-        this.endStates = new ArrayList<>();
-        for (Integer i : endStates) {
-            this.endStates.add(this.states[i]);
-        }
+        this.startingStates = startingStates;
+        this.endStates = endStates;
+        this.simulation = new FrontierSimulation(this.states,
+                this.startingStates, this.endStates);
+        this.cache = DfaCache.accepting(this.simulation);
     }
 
     /**
@@ -68,15 +108,37 @@ public class LambdaNFA implements Automaton {
                 || source <= 0 || target <= 0) {
             return false;
         }
-        return (symbol <= LAST_SYMBOL && symbol >= FIRST_SYMBOL)
-                || symbol == LAMBDA_SYMBOL;
+        return this.alphabet.contains(symbol) || symbol == LAMBDA_SYMBOL;
+    }
+
+    /**
+     * Checks a transition over a range of symbols on validity, i.e., if it
+     * can be part of the automaton.
+     *
+     * @param source The id of the source state.
+     * @param target The id of the target state.
+     * @param first  The first symbol of the range.
+     * @param last   The last symbol of the range, inclusive.
+     * @return {@code true} if and only if the parameters represent a valid
+     * transition of this automation. Lambda transitions have to consist of
+     * {@link LambdaNFA#LAMBDA_SYMBOL} alone.
+     */
+    public boolean isValidTransition(int source, int target, char first,
+                                     char last) {
+        if (first == last) {
+            return isValidTransition(source, target, first);
+        }
+        return isValidTransition(source, target, first)
+                && this.alphabet.contains(first, last);
     }
 
     /**
      * Adds a transition to the automaton. Multitransitions, i.e. transitions
      * with equal {@code source}s, {@code target}s and {@code symbol}s, and
      * self loops, i.e., with {@code source} equal to {@code target} are
-     * explicitly allowed. Needs O(1) time.
+     * explicitly allowed. Needs O(1) time for letter transitions. Lambda
+     * transitions additionally extend the nextSets of all states that reach
+     * {@code source}, which needs O(n) time plus the size of the added sets.
      *
      * @param source The source state.
      * @param target The target state.
@@ -84,11 +146,37 @@ public class LambdaNFA implements Automaton {
      */
     @Override
     public void addTransition(int source, int target, char symbol) {
+        addTransition(source, target, symbol, symbol);
+    }
+
+    /**
+     * Adds a transition which can be used with every symbol of a continuous
+     * range, e.g., {@code [0-9]}. Behaves like a single transition and is
+     * not expanded into one transition per symbol.
+     *
+     * @param source The source state.
+     * @param target The target state.
+     * @param first  The first symbol of the range.
+     * @param last   The last symbol of the range, inclusive.
+     */
+    public void addTransition(int source, int target, char first,
+                              char last) {
         Transition transition = new Transition(this.states[source],
-                this.states[target], symbol);
+                this.states[target], first, last);
         this.states[source].addTransition(transition);
-        for (int i = 1; i < this.states.length; i++) {
-            this.states[i].precomputeNextSet();
+        this.cache.transitionAdded(first, last);
+        this.simulation.transitionAdded(source, target);
+        if (Statistics.enabled) {
+            Statistics.recordTransition();
+        }
+        if (first == LAMBDA_SYMBOL) {
+            this.simulation.lambdaTransitionAdded();
+            ClosureEvent event = Statistics.beginClosure();
+            updateNextSets(this.states[source], this.states[target]);
+            if (event != null) {
+                Statistics.endClosure(event, "update",
+                        this.states.length - 1);
+            }
         }
     }
 
@@ -101,7 +189,13 @@ public class LambdaNFA implements Automaton {
      */
     @Override
     public boolean isElement(String word) {
-        return Objects.equals(longestPrefix(word), word);
+        QueryEvent event = Statistics.beginQuery();
+        boolean result = this.cache.accepts(word);
+        if (event != null) {
+            Statistics.endQuery(event, "isElement", word.length(),
+                    result ? word.length() : -1);
+        }
+        return result;
     }
 
     /**
@@ -114,43 +208,475 @@ public class LambdaNFA implements Automaton {
      */
     @Override
     public String longestPrefix(String word) {
-        final State separator = new State();
-        Queue<State> queue = new LinkedList<>();
-        queue.offer(separator);
-        queue.offer(this.startingState);
-        for (State s : this.startingState.getNextSet()) {
-            queue.offer(s);
-        }
-        int cursor = -1;
-        char symbol = 0;
-        String prefix = null;
-        while (!queue.isEmpty()) {
-            State state = queue.poll();
-            if (this.endStates.contains(state)) {
-                prefix = word.substring(0, cursor);
+        QueryEvent event = Statistics.beginQuery();
+        int length = this.cache.longestPrefixLength(word);
+        if (event != null) {
+            Statistics.endQuery(event, "longestPrefix", word.length(),
+                    length);
+        }
+        if (length < 0) {
+            return null;
+        }
+        return word.substring(0, length);
+    }
+
+    /**
+     * Decides the element problem for a batch of words in parallel on the
+     * common fork/join pool. Only reads the automaton, so it may be called
+     * from several threads at once, but not while transitions are added.
+     *
+     * @param words The words to check.
+     * @return For every word, at the same index, {@code true} if and only if
+     * it is in the language.
+     */
+    public boolean[] isElementAll(List<? extends CharSequence> words) {
+        CharSequence[] input = words.toArray(new CharSequence[0]);
+        boolean[] results = new boolean[input.length];
+        BatchQuery.run(input.length,
+                i -> results[i] = this.simulation.accepts(input[i]));
+        return results;
+    }
+
+    /**
+     * Computes the longest prefixes of a batch of words in parallel on the
+     * common fork/join pool. Only reads the automaton, so it may be called
+     * from several threads at once, but not while transitions are added.
+     *
+     * @param words The words whose prefixes will be checked.
+     * @return For every word, at the same index, its longest prefix in the
+     * language, or {@code null} if none exists.
+     */
+    public String[] longestPrefixAll(List<? extends CharSequence> words) {
+        CharSequence[] input = words.toArray(new CharSequence[0]);
+        String[] results = new String[input.length];
+        BatchQuery.run(input.length,
+                i -> results[i] = prefix(input[i]));
+        return results;
+    }
+
+    /**
+     * Decides the element problem for a batch of words which share long
+     * prefixes, simulating every common prefix only once, see
+     * {@link SharedPrefixBatch}. Runs on the calling thread.
+     *
+     * @param words The words to check.
+     * @return For every word, at the same index, {@code true} if and only if
+     * it is in the language.
+     */
+    public boolean[] isElementAllShared(List<? extends CharSequence> words) {
+        CharSequence[] input = words.toArray(new CharSequence[0]);
+        int[] lengths =
+                SharedPrefixBatch.longestPrefixLengths(this.simulation, input);
+        boolean[] results = new boolean[input.length];
+        for (int i = 0; i < input.length; i++) {
+            results[i] = lengths[i] == input[i].length();
+        }
+        return results;
+    }
+
+    /**
+     * Computes the longest prefixes of a batch of words which share long
+     * prefixes, simulating every common prefix only once, see
+     * {@link SharedPrefixBatch}. Runs on the calling thread.
+     *
+     * @param words The words whose prefixes will be checked.
+     * @return For every word, at the same index, its longest prefix in the
+     * language, or {@code null} if none exists.
+     */
+    public String[] longestPrefixAllShared(
+            List<? extends CharSequence> words) {
+        CharSequence[] input = words.toArray(new CharSequence[0]);
+        int[] lengths =
+                SharedPrefixBatch.longestPrefixLengths(this.simulation, input);
+        String[] results = new String[input.length];
+        for (int i = 0; i < input.length; i++) {
+            if (lengths[i] >= 0) {
+                results[i] = input[i].subSequence(0, lengths[i]).toString();
             }
-            if (state == separator) {
-                ++cursor;
-                if (cursor < word.length()) {
-                    queue.offer(separator);
-                    symbol = word.charAt(cursor);
-                }
-            } else if (this.endStates.contains(state)
-                    && cursor == word.length()) {
-                prefix = word;
-            } else if (cursor < word.length()) {
-                Collection<State> set = new HashSet<>();
-                for (State s : state.getTargets(symbol)) {
-                    set.add(s);
-                    set.addAll(s.getNextSet());
-                }
-                for (State s : set) {
-                    queue.offer(s);
+        }
+        return results;
+    }
+
+    /**
+     * Decides the element problem for a stream of words. Parallel streams
+     * are processed in parallel, with the same restrictions as
+     * {@link LambdaNFA#isElementAll(List)}.
+     *
+     * @param words The words to check.
+     * @return A stream containing, in order, {@code true} for every word in
+     * the language and {@code false} for every other word.
+     */
+    public Stream<Boolean> isElementAll(Stream<? extends CharSequence> words) {
+        return words.map(this.simulation::accepts);
+    }
+
+    /**
+     * Computes the longest prefixes of a stream of words. Parallel streams
+     * are processed in parallel, with the same restrictions as
+     * {@link LambdaNFA#longestPrefixAll(List)}.
+     *
+     * @param words The words whose prefixes will be checked.
+     * @return A stream containing, in order, the longest prefix of every
+     * word, or {@code null} if none exists.
+     */
+    public Stream<String> longestPrefixAll(
+            Stream<? extends CharSequence> words) {
+        return words.map(this::prefix);
+    }
+
+    /**
+     * Creates a matcher which reads input against this automaton symbol by
+     * symbol. Transitions added later are visible to the matcher. A matcher
+     * kept by one thread answers repeated queries without allocating.
+     *
+     * @return A new matcher positioned at the beginning of the input.
+     */
+    public Matcher matcher() {
+        return new Matcher(this.simulation);
+    }
+
+    /**
+     * Finds all non-overlapping leftmost-longest spans of {@code text}
+     * which are in the language, like a regular expression search
+     * continuing after every match. Empty spans are not reported.
+     *
+     * @param text The text to search.
+     * @return The matches, in the order of the text.
+     */
+    public List<Match> findAll(CharSequence text) {
+        return findAll(text, Match.Mode.NON_OVERLAPPING);
+    }
+
+    /**
+     * Finds spans of {@code text} which are in the language, reading the
+     * text from left to right instead of querying every suffix, see
+     * {@link Match.Mode} for the spans reported. Empty spans are not
+     * reported.
+     *
+     * <p>In {@link Match.Mode#ALL} mode, every symbol is read exactly once,
+     * so the search needs O(t * (n + m)) time for a text of length t. In
+     * {@link Match.Mode#NON_OVERLAPPING} mode, a match is only final once no
+     * longer match starting at the same index or earlier is possible, and
+     * the symbols read after its end in the meantime are read again. The
+     * worst case is thus quadratic in the length of the text: for the
+     * language of {@code a} and all words {@code a...ab}, every match in
+     * {@code aaa...a} is only final at the end of the text.
+     *
+     * @param text The text to search.
+     * @param mode The matches to report.
+     * @return The matches, ordered by their end.
+     */
+    public List<Match> findAll(CharSequence text, Match.Mode mode) {
+        return new TextScan(this.states, this.startingStates, this.endStates,
+                this.simulation.liveStates()).run(text, mode);
+    }
+
+    /**
+     * Compiles the automaton into an equivalent minimal deterministic
+     * automaton, using at most {@link LambdaNFA#DEFAULT_COMPILE_LIMIT}
+     * states during the subset construction. Later changes to this automaton
+     * are not reflected by the result.
+     *
+     * @return The compiled automaton.
+     * @throws IllegalStateException If the subset construction exceeds the
+     *                               limit.
+     */
+    public CompiledAutomaton compile() {
+        return compile(DEFAULT_COMPILE_LIMIT);
+    }
+
+    /**
+     * Compiles the automaton into an equivalent minimal deterministic
+     * automaton. Later changes to this automaton are not reflected by the
+     * result.
+     *
+     * @param maxStates The maximum number of deterministic states the subset
+     *                  construction may create, including the dead state.
+     * @return The compiled automaton.
+     * @throws IllegalStateException If the subset construction exceeds
+     *                               {@code maxStates}.
+     */
+    public CompiledAutomaton compile(int maxStates) {
+        return DfaCompiler.compile(this.states, this.startingStates,
+                this.endStates, maxStates);
+    }
+
+    /**
+     * Checks whether the language of this automaton includes the language
+     * of another automaton, without determinizing either of them, see
+     * {@link LanguageInclusion}.
+     *
+     * @param other The automaton whose language should be included.
+     * @return {@code true} if and only if every word accepted by
+     * {@code other} is accepted by this automaton.
+     */
+    public boolean includes(LambdaNFA other) {
+        return inclusionCounterexample(other) == null;
+    }
+
+    /**
+     * Checks whether this automaton and another automaton accept the same
+     * language, by checking inclusion in both directions.
+     *
+     * @param other The automaton to compare with.
+     * @return {@code true} if and only if both automata accept exactly the
+     * same words.
+     */
+    public boolean equivalentTo(LambdaNFA other) {
+        return equivalenceCounterexample(other) == null;
+    }
+
+    /**
+     * Searches a shortest word accepted by another automaton but not by this
+     * automaton.
+     *
+     * @param other The automaton whose language should be included.
+     * @return A shortest such word, or {@code null} if
+     * {@link LambdaNFA#includes(LambdaNFA)} holds.
+     */
+    public String inclusionCounterexample(LambdaNFA other) {
+        return LanguageInclusion.counterexample(other.states,
+                other.simulation, this.states, this.simulation);
+    }
+
+    /**
+     * Searches a shortest word accepted by exactly one of this automaton
+     * and another automaton.
+     *
+     * @param other The automaton to compare with.
+     * @return A shortest such word, or {@code null} if
+     * {@link LambdaNFA#equivalentTo(LambdaNFA)} holds.
+     */
+    public String equivalenceCounterexample(LambdaNFA other) {
+        String missing = inclusionCounterexample(other);
+        String extra = other.inclusionCounterexample(this);
+        if (missing == null || extra != null
+                && extra.length() < missing.length()) {
+            return extra;
+        }
+        return missing;
+    }
+
+    /**
+     * Creates an equivalent automaton without lambda transitions. Every
+     * state {@code p} receives the letter transitions of all states in its
+     * lambda closure, without duplicates, and becomes final if its closure
+     * contains a final state. Reading a symbol then needs a single
+     * successor lookup per active state, without expanding closures. Later
+     * changes to this automaton are not reflected by the result.
+     *
+     * @return The lambda-free automaton, with the same states, starting
+     * states and alphabet.
+     */
+    public LambdaNFA eliminateLambdas() {
+        int stateCount = this.states.length - 1;
+        LambdaNFA result = new LambdaNFA(stateCount,
+                (BitSet) this.startingStates.clone(), new BitSet(),
+                this.alphabet);
+        Set<Long> edges = new HashSet<>();
+        for (int p = 1; p <= stateCount; p++) {
+            BitSet closure = this.states[p].getClosure();
+            if (closure == null) {
+                closure = new BitSet();
+                closure.set(p);
+            }
+            if (closure.intersects(this.endStates)) {
+                result.endStates.set(p);
+            }
+            State source = result.states[p];
+            edges.clear();
+            for (int q = closure.nextSetBit(0); q >= 0;
+                 q = closure.nextSetBit(q + 1)) {
+                for (Transition t : this.states[q].getSymbolTransitions()) {
+                    int target = t.getTarget().getNumber();
+                    long key = (long) target << 32
+                            | (long) t.getSymbol() << 16
+                            | t.getLastSymbol();
+                    if (edges.add(key)) {
+                        source.addTransition(new Transition(source,
+                                result.states[target], t.getSymbol(),
+                                t.getLastSymbol()));
+                    }
                 }
             }
+        }
+        return result;
+    }
+
+    /**
+     * Freezes the automaton into an immutable copy stored in compressed
+     * sparse row layout, i.e., in a few primitive arrays instead of an
+     * object graph. Later changes to this automaton are not reflected by
+     * the result.
+     *
+     * @return The frozen automaton.
+     */
+    public FrozenAutomaton freeze() {
+        return FrozenAutomaton.of(this.states, this.startingStates,
+                this.endStates);
+    }
+
+    /**
+     * Copies the automaton into an immutable automaton stored outside of the
+     * Java heap. Later changes to this automaton are not reflected by the
+     * result. Its memory is returned once it is no longer referenced; use
+     * {@link OffHeapAutomaton.Builder} to avoid the copy on the heap.
+     *
+     * @return The off-heap automaton.
+     */
+    public OffHeapAutomaton toOffHeap() {
+        return OffHeapAutomaton.of(this.states, this.startingStates,
+                this.endStates);
+    }
+
+    /**
+     * Saves the automaton as a binary snapshot, which
+     * {@link OffHeapAutomaton#load(Path)} maps into memory without parsing
+     * or rebuilding it. The alphabet is not saved, since the loaded
+     * automaton cannot be modified.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        try (OffHeapAutomaton snapshot = toOffHeap()) {
+            snapshot.save(file);
+        }
+    }
+
+    /**
+     * Estimates the number of bytes the states and transitions of this
+     * automaton occupy on the heap of a 64-bit virtual machine with
+     * compressed object pointers. Can be compared with
+     * {@link FrozenAutomaton#estimateHeapSize()}.
+     *
+     * @return The estimated size in bytes.
+     */
+    public long estimateHeapSize() {
+        long size = (16 + 4L * this.states.length + 7) & ~7L;
+        Set<BitSet> closures =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 1; i < this.states.length; i++) {
+            size += this.states[i].estimateHeapSize();
+            BitSet closure = this.states[i].getClosure();
+            if (closure != null && closures.add(closure)) {
+                size += 48 + closure.size() / 8;
+            }
+        }
+        return size;
+    }
 
+    /**
+     * Default getter for the alphabet field.
+     *
+     * @return The symbols transitions of this automaton may read.
+     */
+    public Alphabet getAlphabet() {
+        return this.alphabet;
+    }
+
+    /**
+     * Default getter for the cache field. Queries are answered through this
+     * cache, which can be used to configure its memory limit and to read its
+     * hit and miss counters.
+     *
+     * @return The lazily built deterministic automaton used for queries.
+     */
+    public DfaCache<Boolean> getDfaCache() {
+        return this.cache;
+    }
+
+    private String prefix(CharSequence word) {
+        int length = this.simulation.longestPrefixLength(word);
+        if (length < 0) {
+            return null;
+        }
+        return word.subSequence(0, length).toString();
+    }
+
+    /**
+     * Getter for a single state of the automaton.
+     *
+     * @param number The number of the state.
+     * @return The state identified by {@code number}.
+     */
+    State getState(int number) {
+        return this.states[number];
+    }
+
+    /**
+     * Default getter for the states field.
+     *
+     * @return The states, indexed by number. Must not be modified.
+     */
+    State[] getStates() {
+        return this.states;
+    }
+
+    /**
+     * Default getter for the simulation field.
+     *
+     * @return The simulation running words through the automaton.
+     */
+    FrontierSimulation getSimulation() {
+        return this.simulation;
+    }
+
+    /**
+     * Getter for the number of states of the automaton.
+     *
+     * @return The largest state number.
+     */
+    int getStateCount() {
+        return this.states.length - 1;
+    }
+
+    /**
+     * Default getter for the startingStates field.
+     *
+     * @return The numbers of all starting states. Must not be modified.
+     */
+    BitSet getStartingStates() {
+        return this.startingStates;
+    }
+
+    /**
+     * Default getter for the endStates field.
+     *
+     * @return The numbers of all final states. Must not be modified.
+     */
+    BitSet getEndStates() {
+        return this.endStates;
+    }
+
+    /**
+     * Recomputes the lambda closures of all states at once, sharing them
+     * between states on common lambda cycles.
+     */
+    void recomputeClosures() {
+        LambdaClosures.compute(this.states);
+    }
+
+    private static BitSet bitSetOf(Collection<Integer> numbers) {
+        BitSet set = new BitSet();
+        for (Integer i : numbers) {
+            set.set(i);
+        }
+        return set;
+    }
+
+    private void updateNextSets(State source, State target) {
+        BitSet reached = new BitSet(this.states.length);
+        reached.set(target.getNumber());
+        if (target.getClosure() != null) {
+            reached.or(target.getClosure());
+        }
+        for (int i = 1; i < this.states.length; i++) {
+            State state = this.states[i];
+            if (state.closureContains(source.getNumber())) {
+                state.extendClosure(reached);
+            }
         }
-        return prefix;
     }
 
     /**
@@ -166,4 +692,197 @@ public class LambdaNFA implements Automaton {
         }
         return sb.toString();
     }
+
+    /**
+     * Builder creating a lambda automaton from many transitions at once.
+     * Transitions are only collected until {@link Builder#build()} is
+     * called, which validates them once and computes all nextSets in a
+     * single pass instead of updating them per transition. In contrast to
+     * the constructor of {@link LambdaNFA}, several starting states are
+     * supported.
+     */
+    public static final class Builder implements AutomatonBuilder {
+        private final int stateCount;
+        private final Alphabet alphabet;
+        private final BitSet startingStates = new BitSet();
+        private final BitSet endStates = new BitSet();
+        private int[] sources = new int[16];
+        private int[] targets = new int[16];
+        private char[] symbols = new char[16];
+        private char[] lastSymbols = new char[16];
+        private int transitionCount = 0;
+
+        /**
+         * General purpose constructor for the builder.
+         *
+         * @param stateCount Number of states the automaton should consist of.
+         */
+        public Builder(int stateCount) {
+            this(stateCount, Alphabet.DEFAULT);
+        }
+
+        /**
+         * Constructor for a builder of an automaton over a custom alphabet.
+         *
+         * @param stateCount Number of states the automaton should consist of.
+         * @param alphabet   The symbols transitions may read.
+         */
+        public Builder(int stateCount, Alphabet alphabet) {
+            this.stateCount = stateCount;
+            this.alphabet = alphabet;
+        }
+
+        /**
+         * Adds a state to the set of starting states.
+         *
+         * @param state The number of the state.
+         * @return This builder.
+         */
+        @Override
+        public Builder addStartingState(int state) {
+            this.startingStates.set(checkState(state));
+            return this;
+        }
+
+        /**
+         * Adds a state to the set of final states.
+         *
+         * @param state The number of the state.
+         * @return This builder.
+         */
+        @Override
+        public Builder addEndState(int state) {
+            this.endStates.set(checkState(state));
+            return this;
+        }
+
+        /**
+         * Adds a single transition. It is validated by
+         * {@link Builder#build()}.
+         *
+         * @param source The source state.
+         * @param target The target state.
+         * @param symbol The symbol to read.
+         * @return This builder.
+         */
+        public Builder addTransition(int source, int target, char symbol) {
+            return addTransition(source, target, symbol, symbol);
+        }
+
+        /**
+         * Adds a single transition over a range of symbols. It is validated
+         * by {@link Builder#build()}.
+         *
+         * @param source The source state.
+         * @param target The target state.
+         * @param first  The first symbol of the range.
+         * @param last   The last symbol of the range, inclusive.
+         * @return This builder.
+         */
+        @Override
+        public Builder addTransition(int source, int target, char first,
+                                     char last) {
+            ensureCapacity(this.transitionCount + 1);
+            this.sources[this.transitionCount] = source;
+            this.targets[this.transitionCount] = target;
+            this.symbols[this.transitionCount] = first;
+            this.lastSymbols[this.transitionCount] = last;
+            ++this.transitionCount;
+            return this;
+        }
+
+        /**
+         * Adds many transitions at once, the i-th transition being given by
+         * the i-th entry of all three arrays. They are validated by
+         * {@link Builder#build()}.
+         *
+         * @param sources The source states.
+         * @param targets The target states.
+         * @param symbols The symbols to read.
+         * @return This builder.
+         * @throws IllegalArgumentException If the arrays differ in length.
+         */
+        public Builder addTransitions(int[] sources, int[] targets,
+                                      char[] symbols) {
+            if (sources.length != targets.length
+                    || sources.length != symbols.length) {
+                throw new IllegalArgumentException(
+                        "Arrays of transitions differ in length.");
+            }
+            ensureCapacity(this.transitionCount + sources.length);
+            System.arraycopy(sources, 0, this.sources,
+                    this.transitionCount, sources.length);
+            System.arraycopy(targets, 0, this.targets,
+                    this.transitionCount, targets.length);
+            System.arraycopy(symbols, 0, this.symbols,
+                    this.transitionCount, symbols.length);
+            System.arraycopy(symbols, 0, this.lastSymbols,
+                    this.transitionCount, symbols.length);
+            this.transitionCount += sources.length;
+            return this;
+        }
+
+        /**
+         * Creates the automaton. Validates all transitions, inserts them
+         * into the adjacency lists and computes the lambda closures of all
+         * states in a single pass, see {@link LambdaClosures}.
+         *
+         * @return The new automaton.
+         * @throws IllegalStateException    If no starting state was added.
+         * @throws IllegalArgumentException If one of the transitions is not
+         *                                  valid or the alphabet contains
+         *                                  {@link LambdaNFA#LAMBDA_SYMBOL}.
+         */
+        public LambdaNFA build() {
+            if (this.startingStates.isEmpty()) {
+                throw new IllegalStateException(
+                        "No starting state was added.");
+            }
+            LambdaNFA nfa = new LambdaNFA(this.stateCount,
+                    (BitSet) this.startingStates.clone(),
+                    (BitSet) this.endStates.clone(), this.alphabet);
+            boolean hasLambda = false;
+            for (int i = 0; i < this.transitionCount; i++) {
+                int source = this.sources[i];
+                int target = this.targets[i];
+                char symbol = this.symbols[i];
+                char last = this.lastSymbols[i];
+                if (!nfa.isValidTransition(source, target, symbol, last)) {
+                    throw new IllegalArgumentException("Transition (" + source
+                            + ", " + target + ") " + symbol
+                            + (symbol == last ? "" : "-" + last)
+                            + " is not valid.");
+                }
+                nfa.states[source].addTransition(new Transition(
+                        nfa.states[source], nfa.states[target], symbol,
+                        last));
+                if (symbol == LAMBDA_SYMBOL) {
+                    hasLambda = true;
+                }
+            }
+            if (hasLambda) {
+                nfa.simulation.lambdaTransitionAdded();
+                nfa.recomputeClosures();
+            }
+            return nfa;
+        }
+
+        private int checkState(int state) {
+            if (state <= 0 || state > this.stateCount) {
+                throw new IllegalArgumentException(
+                        "State " + state + " does not exist.");
+            }
+            return state;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > this.sources.length) {
+                int length = Math.max(capacity, 2 * this.sources.length);
+                this.sources = Arrays.copyOf(this.sources, length);
+                this.targets = Arrays.copyOf(this.targets, length);
+                this.symbols = Arrays.copyOf(this.symbols, length);
+                this.lastSymbols = Arrays.copyOf(this.lastSymbols, length);
+            }
+        }
+    }
 }
@@ -0,0 +1,207 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Searches for words accepted by one lambda automaton, the smaller one, but
+ * not by another, the larger one, without determinizing both. Following De
+ * Wulf et al., the search runs breadth first over pairs of a single state
+ * of the smaller automaton and a set of active states of the larger one. A
+ * pair is only explored if no explored pair with the same state has a
+ * subset of its states, since every word leading from the larger set to a
+ * rejection also does so from the smaller set. The explored sets thus form
+ * an antichain per state. A queued pair whose set is replaced by a subset
+ * at the same depth is skipped as well. Breadth first order keeps the first
+ * word found shortest. Symbols are grouped into {@link SymbolClasses} of
+ * both automata, and states which cannot reach a final state are dropped by
+ * the simulations.
+ */
+final class LanguageInclusion {
+    private final FrontierSimulation smaller;
+    private final FrontierSimulation larger;
+    private final SymbolClasses classes;
+
+    private LanguageInclusion(State[] smallerStates,
+                              FrontierSimulation smaller,
+                              State[] largerStates,
+                              FrontierSimulation larger) {
+        this.smaller = smaller;
+        this.larger = larger;
+        State[] states =
+                new State[smallerStates.length + largerStates.length - 1];
+        System.arraycopy(smallerStates, 1, states, 1,
+                smallerStates.length - 1);
+        System.arraycopy(largerStates, 1, states, smallerStates.length,
+                largerStates.length - 1);
+        this.classes = SymbolClasses.of(states);
+    }
+
+    /**
+     * Searches a shortest word accepted by the smaller automaton but not by
+     * the larger one, using antichains.
+     *
+     * @param smallerStates The states of the smaller automaton.
+     * @param smaller       The simulation of the smaller automaton.
+     * @param largerStates  The states of the larger automaton.
+     * @param larger        The simulation of the larger automaton.
+     * @return A shortest counterexample, or {@code null} if the language of
+     * the smaller automaton is included in the language of the larger one.
+     */
+    static String counterexample(State[] smallerStates,
+                                 FrontierSimulation smaller,
+                                 State[] largerStates,
+                                 FrontierSimulation larger) {
+        return new LanguageInclusion(smallerStates, smaller, largerStates,
+                larger).searchAntichains();
+    }
+
+    /**
+     * Searches a shortest word accepted by the smaller automaton but not by
+     * the larger one by running the subset construction of both automata
+     * side by side, without any pruning. Serves as a baseline for the
+     * benchmarks.
+     *
+     * @param smaller The smaller automaton.
+     * @param larger  The larger automaton.
+     * @return A shortest counterexample, or {@code null} if the language of
+     * the smaller automaton is included in the language of the larger one.
+     */
+    static String counterexampleBySubsets(LambdaNFA smaller,
+                                          LambdaNFA larger) {
+        return new LanguageInclusion(smaller.getStates(),
+                smaller.getSimulation(), larger.getStates(),
+                larger.getSimulation()).searchSubsets();
+    }
+
+    private String searchAntichains() {
+        List<Node> queue = new ArrayList<>();
+        List<List<Node>> antichains = new ArrayList<>();
+        for (int i = 0; i < this.smaller.capacity(); i++) {
+            antichains.add(new ArrayList<>(1));
+        }
+        BitSet start = this.larger.initialSet();
+        BitSet initial = this.smaller.initialSet();
+        for (int p = initial.nextSetBit(0); p >= 0;
+             p = initial.nextSetBit(p + 1)) {
+            offer(queue, antichains.get(p), new Node(p, start, null, '\0'));
+        }
+        BitSet single = new BitSet(this.smaller.capacity());
+        for (int head = 0; head < queue.size(); head++) {
+            Node node = queue.get(head);
+            if (node.superseded) {
+                continue;
+            }
+            single.clear();
+            single.set(node.state);
+            if (this.smaller.isAccepting(single)
+                    && !this.larger.isAccepting(node.states)) {
+                return node.word();
+            }
+            for (int c = 1; c < this.classes.count(); c++) {
+                char symbol = this.classes.representative(c);
+                BitSet targets = this.smaller.successors(single, symbol);
+                if (targets.isEmpty()) {
+                    continue;
+                }
+                BitSet states = this.larger.successors(node.states, symbol);
+                for (int p = targets.nextSetBit(0); p >= 0;
+                     p = targets.nextSetBit(p + 1)) {
+                    offer(queue, antichains.get(p),
+                            new Node(p, states, node, symbol));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void offer(List<Node> queue, List<Node> antichain,
+                              Node node) {
+        for (Node explored : antichain) {
+            if (isSubset(explored.states, node.states)) {
+                return;
+            }
+        }
+        antichain.removeIf(explored -> {
+            if (!isSubset(node.states, explored.states)) {
+                return false;
+            }
+            explored.superseded = explored.depth == node.depth;
+            return true;
+        });
+        antichain.add(node);
+        queue.add(node);
+    }
+
+    private static boolean isSubset(BitSet subset, BitSet superset) {
+        for (int i = subset.nextSetBit(0); i >= 0;
+             i = subset.nextSetBit(i + 1)) {
+            if (!superset.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String searchSubsets() {
+        List<Node> queue = new ArrayList<>();
+        List<BitSet> smallerSets = new ArrayList<>();
+        Set<List<BitSet>> explored = new HashSet<>();
+        BitSet initial = this.smaller.initialSet();
+        BitSet start = this.larger.initialSet();
+        explored.add(List.of(initial, start));
+        queue.add(new Node(0, start, null, '\0'));
+        smallerSets.add(initial);
+        for (int head = 0; head < queue.size(); head++) {
+            Node node = queue.get(head);
+            BitSet active = smallerSets.get(head);
+            if (this.smaller.isAccepting(active)
+                    && !this.larger.isAccepting(node.states)) {
+                return node.word();
+            }
+            for (int c = 1; c < this.classes.count(); c++) {
+                char symbol = this.classes.representative(c);
+                BitSet targets = this.smaller.successors(active, symbol);
+                BitSet states = this.larger.successors(node.states, symbol);
+                if (!targets.isEmpty()
+                        && explored.add(List.of(targets, states))) {
+                    queue.add(new Node(0, states, node, symbol));
+                    smallerSets.add(targets);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A pair reached during the search, together with the last symbol read
+     * and the pair it was read in, to rebuild the word.
+     */
+    private static final class Node {
+        private final int state;
+        private final BitSet states;
+        private final Node parent;
+        private final char symbol;
+        private final int depth;
+        private boolean superseded = false;
+
+        private Node(int state, BitSet states, Node parent, char symbol) {
+            this.state = state;
+            this.states = states;
+            this.parent = parent;
+            this.symbol = symbol;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        private String word() {
+            StringBuilder sb = new StringBuilder();
+            for (Node node = this; node.parent != null; node = node.parent) {
+                sb.append(node.symbol);
+            }
+            return sb.reverse().toString();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures the latency and throughput of a running {@link Server}. Sends
+ * GENERATE to load the predefined automaton under the name {@value #NAME},
+ * then opens the given number of connections, which send CHECK requests
+ * for random words concurrently. Every connection pipelines its requests
+ * in windows of {@value #PIPELINE_DEPTH}: the whole window is sent at once,
+ * and the latency of a request is the time from sending its window to
+ * receiving its response.
+ */
+final class LoadGenerator {
+    /**
+     * The number of requests a connection sends before reading responses.
+     */
+    static final int PIPELINE_DEPTH = 16;
+
+    private static final String NAME = "load";
+    private static final int WORD_LENGTH = 16;
+
+    private LoadGenerator() throws InstantiationException {
+        throw new InstantiationException(
+                "LoadGenerator may not be instantiated.");
+    }
+
+    /**
+     * Runs the load and prints the results to standard output.
+     *
+     * @param address     The address of the server, as accepted by
+     *                    {@link Server#parseAddress(String)}.
+     * @param connections The number of concurrent connections.
+     * @param requests    The number of requests per connection.
+     * @throws IOException          If a connection fails.
+     * @throws InterruptedException If interrupted while waiting for the
+     *                              connections.
+     */
+    static void run(String address, int connections, int requests)
+            throws IOException, InterruptedException {
+        try (SocketChannel channel =
+                     SocketChannel.open(Server.parseAddress(address))) {
+            BufferedReader in = new BufferedReader(Channels.newReader(
+                    channel, StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(Channels.newWriter(channel,
+                    StandardCharsets.UTF_8));
+            String[] setUp = {"USE " + NAME, "GENERATE"};
+            for (String request : setUp) {
+                out.write(request + "\n");
+            }
+            out.flush();
+            for (String request : setUp) {
+                String response = in.readLine();
+                if (!"OK".equals(response)) {
+                    throw new IOException("Request " + request
+                            + " failed: " + response);
+                }
+            }
+        }
+
+        long[][] latencies = new long[connections][];
+        Thread[] threads = new Thread[connections];
+        long begin = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            int connection = c;
+            threads[c] = new Thread(() -> latencies[connection] =
+                    runConnection(address, requests, connection));
+            threads[c].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream)
+                .sorted().toArray();
+        if (all.length < connections * requests) {
+            System.out.println("Error! Some connections failed.");
+            return;
+        }
+        System.out.printf("Requests:   %d over %d connections%n",
+                all.length, connections);
+        System.out.printf("Throughput: %.0f requests/s%n",
+                all.length * 1e9 / elapsed);
+        System.out.printf("Latency:    p50 %.1f us, p99 %.1f us%n",
+                percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3);
+    }
+
+    private static long[] runConnection(String address, int requests,
+                                        long seed) {
+        long[] latencies = new long[requests];
+        Random random = new Random(seed);
+        char[] word = new char[WORD_LENGTH];
+        try (SocketChannel channel =
+                     SocketChannel.open(Server.parseAddress(address))) {
+            BufferedReader in = new BufferedReader(Channels.newReader(
+                    channel, StandardCharsets.UTF_8));
+            Writer out = new BufferedWriter(Channels.newWriter(channel,
+                    StandardCharsets.UTF_8));
+            out.write("USE " + NAME + "\n");
+            out.flush();
+            in.readLine();
+            for (int sent = 0; sent < requests; sent += PIPELINE_DEPTH) {
+                int window = Math.min(PIPELINE_DEPTH, requests - sent);
+                for (int i = 0; i < window; i++) {
+                    for (int j = 0; j < word.length; j++) {
+                        word[j] = random.nextBoolean() ? 'a' : 'b';
+                    }
+                    out.write("CHECK \"");
+                    out.write(word);
+                    out.write("\"\n");
+                }
+                long start = System.nanoTime();
+                out.flush();
+                for (int i = 0; i < window; i++) {
+                    if (in.readLine() == null) {
+                        throw new IOException("Connection closed.");
+                    }
+                    latencies[sent + i] = System.nanoTime() - start;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Connection failed: " + e.getMessage());
+            return new long[0];
+        }
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
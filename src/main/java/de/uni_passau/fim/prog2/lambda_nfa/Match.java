@@ -0,0 +1,77 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+/**
+ * A span of a text whose content is in the language of an automaton, as
+ * reported by {@link LambdaNFA#findAll(CharSequence, Match.Mode)}.
+ */
+public final class Match {
+    private final int start;
+    private final int end;
+
+    /**
+     * General purpose constructor for the match.
+     *
+     * @param start The index of the first symbol of the span.
+     * @param end   The index after the last symbol of the span.
+     */
+    public Match(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Default getter for the start field.
+     *
+     * @return The index of the first symbol of the span.
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Default getter for the end field.
+     *
+     * @return The index after the last symbol of the span.
+     */
+    public int getEnd() {
+        return this.end;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Match other)) {
+            return false;
+        }
+        return this.start == other.start && this.end == other.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.start + this.end;
+    }
+
+    /**
+     * Generates string representation of the match.
+     *
+     * @return The half-open span, e.g., {@code [3, 7)}.
+     */
+    @Override
+    public String toString() {
+        return "[" + this.start + ", " + this.end + ")";
+    }
+
+    /**
+     * The matches reported when scanning a text.
+     */
+    public enum Mode {
+        /**
+         * Leftmost-longest matches which do not overlap, like a regular
+         * expression search that continues after the end of every match.
+         */
+        NON_OVERLAPPING,
+        /**
+         * For every index where a match ends, the match starting leftmost.
+         */
+        ALL
+    }
+}
@@ -0,0 +1,228 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Matches input against a lambda automaton symbol by symbol, without
+ * buffering the input. Keeps track of the current set of active states and
+ * of the longest accepted prefix seen so far. Once no state is active
+ * anymore, further input is ignored. Instances are not thread-safe and are
+ * obtained with {@link LambdaNFA#matcher()}.
+ *
+ * <p>A matcher may also be reused for any number of whole-word queries.
+ * All its buffers are sized to the number of states when it is created, so
+ * as long as the automaton does not change, queries allocate nothing.
+ */
+public final class Matcher {
+    /**
+     * The largest part of a file that is mapped into memory at once.
+     */
+    private static final long MAPPING_SIZE = 1L << 30;
+
+    private final FrontierSimulation simulation;
+    private final int[] worklist;
+    private BitSet active;
+    private BitSet next;
+    private long position;
+    private long longestPrefixLength;
+
+    /**
+     * General purpose constructor for the matcher. Immediately resets it to
+     * the beginning of the input.
+     *
+     * @param simulation The simulation of the automaton to match against.
+     */
+    Matcher(FrontierSimulation simulation) {
+        this.simulation = simulation;
+        this.worklist = new int[simulation.capacity()];
+        this.active = new BitSet(simulation.capacity());
+        this.next = new BitSet(simulation.capacity());
+        reset();
+    }
+
+    /**
+     * Resets the matcher to the beginning of a new input.
+     */
+    public void reset() {
+        this.simulation.start(this.active, this.worklist);
+        this.position = 0;
+        this.longestPrefixLength = isAccepting() ? 0 : -1;
+    }
+
+    /**
+     * Reads a single symbol.
+     *
+     * @param symbol The next symbol of the input.
+     * @return {@code false} if and only if no state is active anymore, i.e.,
+     * the rest of the input is irrelevant.
+     */
+    public boolean feed(char symbol) {
+        if (isDead()) {
+            return false;
+        }
+        this.simulation.step(this.active, symbol, this.next, this.worklist);
+        BitSet swap = this.active;
+        this.active = this.next;
+        this.next = swap;
+        ++this.position;
+        if (isAccepting()) {
+            this.longestPrefixLength = this.position;
+        }
+        return !isDead();
+    }
+
+    /**
+     * Reads a sequence of symbols, stopping early once no state is active
+     * anymore.
+     *
+     * @param symbols The next symbols of the input.
+     * @return {@code false} if and only if no state is active anymore.
+     */
+    public boolean feed(CharSequence symbols) {
+        for (int i = 0; i < symbols.length(); i++) {
+            if (!feed(symbols.charAt(i))) {
+                return false;
+            }
+        }
+        return !isDead();
+    }
+
+    /**
+     * Reads the remaining symbols of a buffer, stopping early once no state
+     * is active anymore. The position of the buffer is advanced past all
+     * symbols that were read.
+     *
+     * @param symbols The next symbols of the input.
+     * @return {@code false} if and only if no state is active anymore.
+     */
+    public boolean feed(CharBuffer symbols) {
+        while (symbols.hasRemaining()) {
+            if (!feed(symbols.get())) {
+                return false;
+            }
+        }
+        return !isDead();
+    }
+
+    /**
+     * Resets the matcher and reads a whole word, stopping early once no
+     * state is active anymore. Does not allocate.
+     *
+     * @param word The word whose prefixes will be checked.
+     * @return The length of the longest accepted prefix of {@code word}, or
+     * {@code -1} if there is none.
+     */
+    public int longestPrefixLength(CharSequence word) {
+        reset();
+        feed(word);
+        return (int) this.longestPrefixLength;
+    }
+
+    /**
+     * Resets the matcher and decides whether {@code word} is accepted as a
+     * whole. Does not allocate.
+     *
+     * @param word The word to check.
+     * @return {@code true} if and only if {@code word} is accepted.
+     */
+    public boolean matches(CharSequence word) {
+        reset();
+        return feed(word) && isAccepting();
+    }
+
+    /**
+     * Resets the matcher and computes the longest prefix of {@code word}
+     * which is accepted. Only allocates the result.
+     *
+     * @param word The word whose prefixes will be checked.
+     * @return The longest prefix, or {@code null} if none exists.
+     */
+    public String longestPrefix(String word) {
+        int length = longestPrefixLength(word);
+        if (length < 0) {
+            return null;
+        }
+        return word.substring(0, length);
+    }
+
+    /**
+     * Resets the matcher and reads a whole file, which is mapped into memory
+     * instead of being copied. Every byte is read as one symbol, i.e., the
+     * file is decoded as ISO-8859-1. Stops reading once no state is active
+     * anymore.
+     *
+     * @param file The file to read.
+     * @return The length of the longest accepted prefix of the file, or
+     * {@code -1} if there is none.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    public long matchFile(Path file) throws IOException {
+        reset();
+        try (FileChannel channel =
+                     FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long offset = 0; offset < size && !isDead();
+                 offset += MAPPING_SIZE) {
+                MappedByteBuffer buffer = channel.map(
+                        FileChannel.MapMode.READ_ONLY, offset,
+                        Math.min(MAPPING_SIZE, size - offset));
+                feed(buffer);
+            }
+        }
+        return this.longestPrefixLength;
+    }
+
+    /**
+     * Checks whether the input read so far is accepted by the automaton.
+     *
+     * @return {@code true} if and only if a final state is active.
+     */
+    public boolean isAccepting() {
+        return this.simulation.isAccepting(this.active);
+    }
+
+    /**
+     * Checks whether no state is active anymore, in which case neither the
+     * input read so far nor any continuation of it can be accepted.
+     *
+     * @return {@code true} if and only if no state is active.
+     */
+    public boolean isDead() {
+        return this.active.isEmpty();
+    }
+
+    /**
+     * Default getter for the position field.
+     *
+     * @return The number of symbols read since the last reset, not counting
+     * symbols ignored after no state was active anymore.
+     */
+    public long getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Default getter for the longestPrefixLength field.
+     *
+     * @return The length of the longest accepted prefix of the input read
+     * so far, or {@code -1} if there is none.
+     */
+    public long getLongestPrefixLength() {
+        return this.longestPrefixLength;
+    }
+
+    private void feed(ByteBuffer bytes) {
+        while (bytes.hasRemaining()) {
+            if (!feed((char) (bytes.get() & 0xFF))) {
+                return;
+            }
+        }
+    }
+}
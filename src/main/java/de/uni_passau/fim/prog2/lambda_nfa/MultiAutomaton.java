@@ -0,0 +1,309 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Runs many lambda automata, the patterns, over a word in a single pass.
+ * The patterns are copied into one automaton as their disjoint union, with
+ * the states of pattern {@code k} numbered after those of all patterns
+ * before it, and every final state is tagged with the index of its pattern.
+ * The union is determinized lazily by a {@link DfaCache}, whose cached
+ * states carry the set of patterns they accept, so reading a symbol is a
+ * single table lookup for all patterns at once. During a pass, only the
+ * last position each accepting cached state was reached at is noted; the
+ * longest accepted prefixes of the patterns are derived from these few
+ * positions at the end. If the memory limit of the cache is hit, the cache
+ * is flushed and the word is simulated on the union instead. Later changes
+ * to the patterns are not reflected. Instances are not thread-safe.
+ */
+public final class MultiAutomaton {
+    /**
+     * The memory limit of the cache of new instances, in bytes. Larger
+     * than {@link DfaCache#DEFAULT_MEMORY_LIMIT}, since the union of many
+     * patterns has many more state sets than a single automaton.
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 1L << 24;
+
+    /**
+     * Estimated fixed size of the payload of an accepting cached state, in
+     * bytes, without the words of its bitset.
+     */
+    private static final long PAYLOAD_OVERHEAD = 48;
+
+    private static final Comparator<Patterns> BY_POSITION =
+            Comparator.comparingInt(accepted -> accepted.position);
+
+    private final int patternCount;
+    private final FrontierSimulation simulation;
+    private final BitSet endStates;
+    private final int[] patterns;
+    private final DfaCache<Patterns> cache;
+    private final List<Patterns> visited = new ArrayList<>();
+    private BitSet active = null;
+    private BitSet next = null;
+    private int[] worklist = null;
+    private int passes = 0;
+
+    private MultiAutomaton(int patternCount, State[] states,
+                           BitSet startingStates, BitSet endStates,
+                           int[] patterns, boolean lambdaFree) {
+        this.patternCount = patternCount;
+        this.simulation = new FrontierSimulation(states, startingStates,
+                endStates);
+        if (!lambdaFree) {
+            this.simulation.lambdaTransitionAdded();
+        }
+        this.endStates = endStates;
+        this.patterns = patterns;
+        this.cache = new DfaCache<>(this.simulation, this::acceptedPatterns,
+                accepted -> PAYLOAD_OVERHEAD + accepted.patterns.size() / 8);
+        this.cache.setMemoryLimit(DEFAULT_MEMORY_LIMIT);
+    }
+
+    /**
+     * Combines automata into one, which reports for every automaton whether
+     * and how far it accepts a word. The automata are copied, so later
+     * changes to them are not reflected.
+     *
+     * @param patterns The automata, identified by their index in the list.
+     * @return The combined automaton.
+     */
+    public static MultiAutomaton of(List<LambdaNFA> patterns) {
+        int stateCount = 0;
+        for (LambdaNFA pattern : patterns) {
+            stateCount += pattern.getStateCount();
+        }
+        State[] states = new State[stateCount + 1];
+        for (int i = 1; i <= stateCount; i++) {
+            states[i] = new State(i);
+        }
+        BitSet startingStates = new BitSet(states.length);
+        BitSet endStates = new BitSet(states.length);
+        int[] owners = new int[states.length];
+        boolean lambdaFree = true;
+        int offset = 0;
+        for (int k = 0; k < patterns.size(); k++) {
+            LambdaNFA pattern = patterns.get(k);
+            int count = pattern.getStateCount();
+            for (int s = 1; s <= count; s++) {
+                State source = states[offset + s];
+                owners[offset + s] = k;
+                for (Transition t
+                        : pattern.getState(s).getLambdaTransitions()) {
+                    source.addTransition(new Transition(source,
+                            states[offset + t.getTarget().getNumber()],
+                            t.getSymbol(), t.getLastSymbol()));
+                    lambdaFree = false;
+                }
+                for (Transition t
+                        : pattern.getState(s).getSymbolTransitions()) {
+                    source.addTransition(new Transition(source,
+                            states[offset + t.getTarget().getNumber()],
+                            t.getSymbol(), t.getLastSymbol()));
+                }
+            }
+            shift(pattern.getStartingStates(), offset, startingStates);
+            shift(pattern.getEndStates(), offset, endStates);
+            offset += count;
+        }
+        return new MultiAutomaton(patterns.size(), states, startingStates,
+                endStates, owners, lambdaFree);
+    }
+
+    /**
+     * Reads {@code word} once for all patterns.
+     *
+     * @param word The word to check.
+     * @return For every pattern, whether it accepts {@code word} and the
+     * length of its longest accepted prefix.
+     */
+    public Result match(CharSequence word) {
+        int[] lengths = new int[this.patternCount];
+        Arrays.fill(lengths, -1);
+        DfaCache.CachedState<Patterns> state = this.cache.start();
+        if (state == null) {
+            return simulate(word, lengths);
+        }
+        int pass = ++this.passes;
+        this.visited.clear();
+        visit(state.getPayload(), 0, pass);
+        for (int i = 0; i < word.length() && !state.isDead(); i++) {
+            state = this.cache.successor(state, word.charAt(i));
+            if (state == null) {
+                return simulate(word, lengths);
+            }
+            visit(state.getPayload(), i + 1, pass);
+        }
+        this.visited.sort(BY_POSITION);
+        for (Patterns accepted : this.visited) {
+            for (int k = accepted.patterns.nextSetBit(0); k >= 0;
+                 k = accepted.patterns.nextSetBit(k + 1)) {
+                lengths[k] = accepted.position;
+            }
+        }
+        return result(word, lengths);
+    }
+
+    /**
+     * Decides the element problem for {@code word} for all patterns at once.
+     *
+     * @param word The word to check.
+     * @return The indices of all patterns whose language contains
+     * {@code word}.
+     */
+    public BitSet accepting(CharSequence word) {
+        return match(word).getAccepting();
+    }
+
+    /**
+     * Default getter for the patternCount field.
+     *
+     * @return The number of combined automata.
+     */
+    public int getPatternCount() {
+        return this.patternCount;
+    }
+
+    /**
+     * Default getter for the cache field. Can be used to configure the
+     * memory limit of the cache and to read its hit, miss and flush
+     * counters.
+     *
+     * @return The lazily built deterministic automaton of the union.
+     */
+    public DfaCache<?> getDfaCache() {
+        return this.cache;
+    }
+
+    private Result simulate(CharSequence word, int[] lengths) {
+        if (this.worklist == null) {
+            this.active = new BitSet(this.simulation.capacity());
+            this.next = new BitSet(this.simulation.capacity());
+            this.worklist = new int[this.simulation.capacity()];
+        }
+        this.simulation.start(this.active, this.worklist);
+        record(this.active, 0, lengths);
+        for (int i = 0; i < word.length() && !this.active.isEmpty(); i++) {
+            this.simulation.step(this.active, word.charAt(i), this.next,
+                    this.worklist);
+            BitSet swap = this.active;
+            this.active = this.next;
+            this.next = swap;
+            record(this.active, i + 1, lengths);
+        }
+        return result(word, lengths);
+    }
+
+    private Result result(CharSequence word, int[] lengths) {
+        BitSet accepting = new BitSet(this.patternCount);
+        for (int k = 0; k < this.patternCount; k++) {
+            if (lengths[k] == word.length()) {
+                accepting.set(k);
+            }
+        }
+        return new Result(accepting, lengths);
+    }
+
+    private void visit(Patterns accepted, int position, int pass) {
+        if (accepted == null) {
+            return;
+        }
+        if (accepted.pass != pass) {
+            accepted.pass = pass;
+            this.visited.add(accepted);
+        }
+        accepted.position = position;
+    }
+
+    private void record(BitSet active, int position, int[] lengths) {
+        for (int s = this.endStates.nextSetBit(0); s >= 0;
+             s = this.endStates.nextSetBit(s + 1)) {
+            if (active.get(s)) {
+                lengths[this.patterns[s]] = position;
+            }
+        }
+    }
+
+    private Patterns acceptedPatterns(BitSet states) {
+        if (!states.intersects(this.endStates)) {
+            return null;
+        }
+        BitSet accepting = new BitSet(this.patternCount);
+        for (int s = states.nextSetBit(0); s >= 0;
+             s = states.nextSetBit(s + 1)) {
+            if (this.endStates.get(s)) {
+                accepting.set(this.patterns[s]);
+            }
+        }
+        return new Patterns(accepting);
+    }
+
+    private static void shift(BitSet states, int offset, BitSet result) {
+        for (int s = states.nextSetBit(1); s >= 0;
+             s = states.nextSetBit(s + 1)) {
+            result.set(offset + s);
+        }
+    }
+
+    /**
+     * The payload of an accepting cached state: the patterns it accepts and
+     * the last position it was reached at during the current pass.
+     */
+    private static final class Patterns {
+        private final BitSet patterns;
+        private int pass = 0;
+        private int position = -1;
+
+        private Patterns(BitSet patterns) {
+            this.patterns = patterns;
+        }
+    }
+
+    /**
+     * The outcome of reading a word with all patterns.
+     */
+    public static final class Result {
+        private final BitSet accepting;
+        private final int[] longestPrefixLengths;
+
+        private Result(BitSet accepting, int[] longestPrefixLengths) {
+            this.accepting = accepting;
+            this.longestPrefixLengths = longestPrefixLengths;
+        }
+
+        /**
+         * Getter for the patterns which accept the whole word.
+         *
+         * @return A copy of the set of indices of all accepting patterns.
+         */
+        public BitSet getAccepting() {
+            return (BitSet) this.accepting.clone();
+        }
+
+        /**
+         * Checks whether a single pattern accepts the whole word.
+         *
+         * @param pattern The index of the pattern.
+         * @return {@code true} if and only if the word is in its language.
+         */
+        public boolean accepts(int pattern) {
+            return this.accepting.get(pattern);
+        }
+
+        /**
+         * Getter for the longest prefix of the word a single pattern
+         * accepts.
+         *
+         * @param pattern The index of the pattern.
+         * @return The length of the longest accepted prefix, or {@code -1}
+         * if there is none.
+         */
+        public int getLongestPrefixLength(int pattern) {
+            return this.longestPrefixLengths[pattern];
+        }
+    }
+}
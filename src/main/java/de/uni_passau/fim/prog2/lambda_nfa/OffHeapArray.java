@@ -0,0 +1,208 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.zip.Checksum;
+
+/**
+ * A fixed-size array of primitive values stored outside of the Java heap, in
+ * direct buffers of at most {@value #CHUNK_BYTES} bytes each, so it may hold
+ * more than {@link Integer#MAX_VALUE} bytes. The garbage collector only
+ * sees the few buffer objects, never the contents. Elements are addressed
+ * by {@code long} indices and never cross a buffer boundary. Reads may
+ * happen from several threads at once once all writes are done. Values
+ * are stored in little-endian byte order, so an array written to a file
+ * can be mapped back into memory on any platform without conversion.
+ *
+ * <p>The memory is returned to the operating system once the array is no
+ * longer referenced and its buffer objects are collected. Java 17 cannot
+ * free direct or mapped buffers deterministically without the incubating
+ * foreign memory API.
+ */
+final class OffHeapArray {
+    private static final int CHUNK_SHIFT = 30;
+    private static final int CHUNK_BYTES = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_BYTES - 1;
+
+    private final int shift;
+    private final long length;
+    private final ByteBuffer[] chunks;
+
+    /**
+     * General purpose constructor for the array, initially filled with
+     * zeros.
+     *
+     * @param length      The number of elements.
+     * @param elementSize The size of an element in bytes, i.e., {@code 2},
+     *                    {@code 4} or {@code 8}.
+     */
+    OffHeapArray(long length, int elementSize) {
+        this(length, elementSize, new ByteBuffer[chunkCount(length,
+                elementSize)]);
+        for (int i = 0; i < this.chunks.length; i++) {
+            this.chunks[i] = ByteBuffer.allocateDirect(chunkSize(i))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    private OffHeapArray(long length, int elementSize, ByteBuffer[] chunks) {
+        this.shift = Integer.numberOfTrailingZeros(elementSize);
+        this.length = length;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Maps a part of a file into memory as an array, without copying it.
+     * The array is read-only and stays valid after the channel is closed.
+     *
+     * @param channel     The channel of the file.
+     * @param position    The offset of the first element in the file.
+     * @param length      The number of elements.
+     * @param elementSize The size of an element in bytes, i.e., {@code 2},
+     *                    {@code 4} or {@code 8}.
+     * @return The mapped array.
+     * @throws IOException If the file cannot be mapped.
+     */
+    static OffHeapArray map(FileChannel channel, long position, long length,
+                            int elementSize) throws IOException {
+        OffHeapArray array = new OffHeapArray(length, elementSize,
+                new ByteBuffer[chunkCount(length, elementSize)]);
+        for (int i = 0; i < array.chunks.length; i++) {
+            array.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    position + ((long) i << CHUNK_SHIFT), array.chunkSize(i))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return array;
+    }
+
+    /**
+     * Writes all elements to the current position of a file.
+     *
+     * @param channel The channel of the file.
+     * @throws IOException If the file cannot be written.
+     */
+    void writeTo(FileChannel channel) throws IOException {
+        for (ByteBuffer chunk : this.chunks) {
+            ByteBuffer bytes = chunk.duplicate();
+            bytes.clear();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Feeds all elements into a checksum.
+     *
+     * @param checksum The checksum to be updated.
+     */
+    void updateChecksum(Checksum checksum) {
+        for (ByteBuffer chunk : this.chunks) {
+            ByteBuffer bytes = chunk.duplicate();
+            bytes.clear();
+            checksum.update(bytes);
+        }
+    }
+
+    /**
+     * Default getter for the length field.
+     *
+     * @return The number of elements.
+     */
+    long length() {
+        return this.length;
+    }
+
+    /**
+     * Getter for the number of bytes occupied outside of the heap.
+     *
+     * @return The size of all buffers in bytes.
+     */
+    long byteSize() {
+        return this.length << this.shift;
+    }
+
+    /**
+     * Reads a single element of an array of int values.
+     *
+     * @param index The index of the element.
+     * @return The value of the element.
+     */
+    int getInt(long index) {
+        long offset = index << 2;
+        return this.chunks[(int) (offset >>> CHUNK_SHIFT)]
+                .getInt((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Writes a single element of an array of int values.
+     *
+     * @param index The index of the element.
+     * @param value The new value of the element.
+     */
+    void setInt(long index, int value) {
+        long offset = index << 2;
+        this.chunks[(int) (offset >>> CHUNK_SHIFT)]
+                .putInt((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * Reads a single element of an array of long values.
+     *
+     * @param index The index of the element.
+     * @return The value of the element.
+     */
+    long getLong(long index) {
+        long offset = index << 3;
+        return this.chunks[(int) (offset >>> CHUNK_SHIFT)]
+                .getLong((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Writes a single element of an array of long values.
+     *
+     * @param index The index of the element.
+     * @param value The new value of the element.
+     */
+    void setLong(long index, long value) {
+        long offset = index << 3;
+        this.chunks[(int) (offset >>> CHUNK_SHIFT)]
+                .putLong((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * Reads a single element of an array of char values.
+     *
+     * @param index The index of the element.
+     * @return The value of the element.
+     */
+    char getChar(long index) {
+        long offset = index << 1;
+        return this.chunks[(int) (offset >>> CHUNK_SHIFT)]
+                .getChar((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Writes a single element of an array of char values.
+     *
+     * @param index The index of the element.
+     * @param value The new value of the element.
+     */
+    void setChar(long index, char value) {
+        long offset = index << 1;
+        this.chunks[(int) (offset >>> CHUNK_SHIFT)]
+                .putChar((int) (offset & CHUNK_MASK), value);
+    }
+
+    private int chunkSize(int chunk) {
+        return (int) Math.min(CHUNK_BYTES,
+                byteSize() - ((long) chunk << CHUNK_SHIFT));
+    }
+
+    private static int chunkCount(long length, int elementSize) {
+        long bytes = length * elementSize;
+        return (int) ((bytes + CHUNK_BYTES - 1) >>> CHUNK_SHIFT);
+    }
+}
@@ -0,0 +1,1019 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * An immutable lambda automaton stored outside of the Java heap, in the
+ * compressed sparse row layout of {@link FrozenAutomaton}: the symbol
+ * ranges and their targets, the lambda closures, the final states and the
+ * transitions for printing are kept in {@link OffHeapArray}s. Queries run
+ * directly on this memory. The only heap memory a query needs grows with
+ * the number of active states, not with the size of the automaton, so
+ * automata with millions of states neither enlarge the heap nor slow down
+ * garbage collection.
+ *
+ * <p>Large automata are best created with a {@link Builder}, which keeps
+ * the transitions off the heap while they are added, for example by
+ * {@link EdgeListFormat#readOffHeap(Path)}. {@link #getState(int)} presents
+ * single states as {@link State} objects, so code written against the
+ * object model can inspect the automaton without copying all of it.
+ *
+ * <p>Queries started after {@link #close()} throw an
+ * {@link IllegalStateException}, while queries already running complete
+ * normally. The memory is returned once the automaton is no longer
+ * referenced, see {@link OffHeapArray}.
+ *
+ * <p>The arrays can be saved as a binary snapshot with {@link #save(Path)}.
+ * {@link #load(Path)} maps such a file into memory and queries it in place,
+ * so loading neither parses the file nor rebuilds any structure. A
+ * snapshot is little-endian and consists of a header, the starting states
+ * and the arrays, each starting at a multiple of eight bytes. The header
+ * holds the magic number {@code LNFA}, the format version, the number of
+ * states, the number of starting states, a CRC-32C checksum of the
+ * starting states and the arrays, and the number of elements of every
+ * array.
+ */
+public final class OffHeapAutomaton implements Automaton, AutoCloseable {
+    /**
+     * The first four bytes of every snapshot, {@code LNFA} in ASCII.
+     */
+    static final int MAGIC = 0x41464E4C;
+
+    /**
+     * The version of the snapshot format written by {@link #save(Path)}.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of an element of every array, in the order of a snapshot.
+     */
+    private static final int[] ELEMENT_SIZES = {8, 8, 2, 8, 4, 8, 4, 8, 4, 2};
+
+    private static final int HEADER_SIZE = 24 + 8 * ELEMENT_SIZES.length;
+
+    private final int stateCount;
+    private final int[] startingStates;
+    private final OffHeapArray endStates;
+    private final OffHeapArray rangeOffsets;
+    private final OffHeapArray rangeStarts;
+    private final OffHeapArray targetOffsets;
+    private final OffHeapArray targets;
+    private final OffHeapArray closureOffsets;
+    private final OffHeapArray closures;
+    private final OffHeapArray edgeOffsets;
+    private final OffHeapArray edgeTargets;
+    private final OffHeapArray edgeSymbols;
+    private final OffHeapArray[] arrays;
+    private volatile boolean closed = false;
+
+    private OffHeapAutomaton(int stateCount, int[] startingStates,
+                             OffHeapArray[] arrays) {
+        this.stateCount = stateCount;
+        this.startingStates = startingStates;
+        this.endStates = arrays[0];
+        this.rangeOffsets = arrays[1];
+        this.rangeStarts = arrays[2];
+        this.targetOffsets = arrays[3];
+        this.targets = arrays[4];
+        this.closureOffsets = arrays[5];
+        this.closures = arrays[6];
+        this.edgeOffsets = arrays[7];
+        this.edgeTargets = arrays[8];
+        this.edgeSymbols = arrays[9];
+        this.arrays = arrays;
+    }
+
+    /**
+     * Copies the given states into off-heap memory. The arrays are sized
+     * exactly by a first pass over the states, and filled by a second pass,
+     * so no intermediate copy of the automaton is created on the heap.
+     *
+     * @param states         The states of the automaton, indexed by number.
+     *                       Their lambda closures have to be up to date.
+     * @param startingStates The numbers of all states where the automaton
+     *                       starts.
+     * @param endStates      The numbers of all final states.
+     * @return The off-heap automaton.
+     */
+    static OffHeapAutomaton of(State[] states, BitSet startingStates,
+                               BitSet endStates) {
+        int n = states.length - 1;
+        long rangeCount = 0;
+        long targetCount = 0;
+        long closureCount = 0;
+        long edgeCount = 0;
+        for (int s = 1; s <= n; s++) {
+            int[] bounds = bounds(states[s]);
+            rangeCount += bounds.length;
+            for (int bound : bounds) {
+                targetCount += targetsOf(states[s], (char) bound).size();
+            }
+            BitSet closure = states[s].getClosure();
+            closureCount += closure == null ? 1 : closure.cardinality();
+            edgeCount += states[s].getLambdaTransitions().size()
+                    + states[s].getSymbolTransitions().size();
+        }
+
+        OffHeapArray finals = new OffHeapArray((states.length + 63) / 64, 8);
+        OffHeapArray rangeOffsets = new OffHeapArray(states.length + 1, 8);
+        OffHeapArray rangeStarts = new OffHeapArray(rangeCount, 2);
+        OffHeapArray targetOffsets = new OffHeapArray(rangeCount + 1, 8);
+        OffHeapArray targets = new OffHeapArray(targetCount, 4);
+        OffHeapArray closureOffsets = new OffHeapArray(states.length + 1, 8);
+        OffHeapArray closures = new OffHeapArray(closureCount, 4);
+        OffHeapArray edgeOffsets = new OffHeapArray(states.length + 1, 8);
+        OffHeapArray edgeTargets = new OffHeapArray(edgeCount, 4);
+        OffHeapArray edgeSymbols = new OffHeapArray(2 * edgeCount, 2);
+
+        long range = 0;
+        long target = 0;
+        long member = 0;
+        long edge = 0;
+        for (int s = 1; s <= n; s++) {
+            rangeOffsets.setLong(s, range);
+            for (int bound : bounds(states[s])) {
+                rangeStarts.setChar(range, (char) bound);
+                targetOffsets.setLong(range, target);
+                for (int t : targetsOf(states[s], (char) bound)) {
+                    targets.setInt(target++, t);
+                }
+                ++range;
+            }
+
+            closureOffsets.setLong(s, member);
+            closures.setInt(member++, s);
+            BitSet closure = states[s].getClosure();
+            if (closure != null) {
+                for (int i = closure.nextSetBit(0); i >= 0;
+                     i = closure.nextSetBit(i + 1)) {
+                    if (i != s) {
+                        closures.setInt(member++, i);
+                    }
+                }
+            }
+
+            edgeOffsets.setLong(s, edge);
+            List<Transition> edges =
+                    new ArrayList<>(states[s].getLambdaTransitions());
+            edges.addAll(states[s].getSymbolTransitions());
+            Collections.sort(edges);
+            for (Transition t : edges) {
+                edgeTargets.setInt(edge, t.getTarget().getNumber());
+                edgeSymbols.setChar(2 * edge, t.getSymbol());
+                edgeSymbols.setChar(2 * edge + 1, t.getLastSymbol());
+                ++edge;
+            }
+        }
+        rangeOffsets.setLong(states.length, range);
+        targetOffsets.setLong(range, target);
+        closureOffsets.setLong(states.length, member);
+        edgeOffsets.setLong(states.length, edge);
+        for (int s = endStates.nextSetBit(0); s >= 0;
+             s = endStates.nextSetBit(s + 1)) {
+            finals.setLong(s >>> 6, finals.getLong(s >>> 6) | 1L << s);
+        }
+        return new OffHeapAutomaton(n, startingStates.stream().toArray(),
+                new OffHeapArray[]{finals, rangeOffsets, rangeStarts,
+                        targetOffsets, targets, closureOffsets, closures,
+                        edgeOffsets, edgeTargets, edgeSymbols});
+    }
+
+    /**
+     * Checks a transition on validity. Since the automaton is immutable, no
+     * transition can be added to it.
+     *
+     * @param source The id of the source state.
+     * @param target The id of the target state.
+     * @param symbol The symbol to be read.
+     * @return Always {@code false}.
+     */
+    @Override
+    public boolean isValidTransition(int source, int target, char symbol) {
+        return false;
+    }
+
+    /**
+     * Not supported, since the automaton is immutable.
+     *
+     * @param source The source state.
+     * @param target The target state.
+     * @param symbol The symbol to read.
+     * @throws UnsupportedOperationException Always.
+     */
+    @Override
+    public void addTransition(int source, int target, char symbol) {
+        throw new UnsupportedOperationException(
+                "Off-heap automata may not be modified.");
+    }
+
+    /**
+     * Decides the element problem for the regular language defined by this
+     * automaton.
+     *
+     * @param word The word to check.
+     * @return {@code true} if and only if {@code word} is in the language.
+     * @throws IllegalStateException If the automaton was closed.
+     */
+    @Override
+    public boolean isElement(String word) {
+        return run(word, true) == word.length();
+    }
+
+    /**
+     * Computes the longest prefix of {@code word} which is an element of the
+     * language. Can be the {@code word} itself, if and only if
+     * {@link Automaton#isElement(String)} called on it returns {@code true}.
+     *
+     * @param word The word whose prefixes will be checked.
+     * @return The longest prefix, or {@code null} if none exists.
+     * @throws IllegalStateException If the automaton was closed.
+     */
+    @Override
+    public String longestPrefix(String word) {
+        int length = run(word, false);
+        if (length < 0) {
+            return null;
+        }
+        return word.substring(0, length);
+    }
+
+    /**
+     * Computes the number of bytes this automaton occupies outside of the
+     * heap.
+     *
+     * @return The size of all off-heap arrays in bytes.
+     */
+    public long getOffHeapSize() {
+        long size = 0;
+        for (OffHeapArray array : this.arrays) {
+            size += array.byteSize();
+        }
+        return size;
+    }
+
+    /**
+     * Saves the automaton as a binary snapshot. The snapshot is written to
+     * a temporary file first, which then replaces {@code file}, so a
+     * snapshot which is currently mapped is not changed.
+     *
+     * @param file The file to write.
+     * @throws IOException           If the file cannot be written.
+     * @throws IllegalStateException If the automaton was closed.
+     */
+    public void save(Path file) throws IOException {
+        checkOpen();
+        ByteBuffer starting = ByteBuffer.allocate(
+                        4 * this.startingStates.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        starting.asIntBuffer().put(this.startingStates);
+        CRC32C checksum = new CRC32C();
+        checksum.update(starting.duplicate());
+        for (OffHeapArray array : this.arrays) {
+            array.updateChecksum(checksum);
+        }
+        ByteBuffer header = ByteBuffer.allocate(
+                        (int) align(HEADER_SIZE + starting.capacity()))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(this.stateCount)
+                .putInt(this.startingStates.length)
+                .putLong(checksum.getValue());
+        for (OffHeapArray array : this.arrays) {
+            header.putLong(array.length());
+        }
+        header.put(starting);
+        header.clear();
+
+        Path directory = file.toAbsolutePath().getParent();
+        if (!Files.isDirectory(directory)) {
+            throw new NoSuchFileException(directory.toString());
+        }
+        Path temporary = Files.createTempFile(directory,
+                file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary,
+                    StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                for (OffHeapArray array : this.arrays) {
+                    array.writeTo(channel);
+                    channel.position(align(channel.position()));
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Loads a binary snapshot written by {@link #save(Path)}. The arrays are
+     * mapped into memory and queried in place. Only the checksum is
+     * computed over the whole file, which reads it sequentially once.
+     *
+     * @param file The file to read.
+     * @return The automaton stored in the file.
+     * @throws IOException If the file cannot be read, is not a snapshot of
+     *                     the current version or is corrupted.
+     */
+    public static OffHeapAutomaton load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header, file);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(file + ": Not an automaton snapshot.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + ": Unsupported version "
+                        + version + ".");
+            }
+            int stateCount = header.getInt();
+            int startingCount = header.getInt();
+            long expected = header.getLong();
+            if (stateCount < 0 || stateCount == Integer.MAX_VALUE
+                    || startingCount < 0 || startingCount > stateCount) {
+                throw new IOException(file + ": Corrupted header.");
+            }
+            ByteBuffer starting = ByteBuffer.allocate(4 * startingCount)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, starting, file);
+            int[] startingStates = new int[startingCount];
+            starting.asIntBuffer().get(startingStates);
+            CRC32C checksum = new CRC32C();
+            checksum.update(starting);
+
+            OffHeapArray[] arrays = new OffHeapArray[ELEMENT_SIZES.length];
+            long position = align(HEADER_SIZE + 4L * startingCount);
+            for (int i = 0; i < arrays.length; i++) {
+                long length = header.getLong();
+                if (length < 0 || position + length * ELEMENT_SIZES[i]
+                        > channel.size()) {
+                    throw new IOException(file + ": File is truncated.");
+                }
+                arrays[i] = OffHeapArray.map(channel, position, length,
+                        ELEMENT_SIZES[i]);
+                position = align(position + arrays[i].byteSize());
+            }
+            for (OffHeapArray array : arrays) {
+                array.updateChecksum(checksum);
+            }
+            if (checksum.getValue() != expected
+                    || arrays[1].length() != stateCount + 2L
+                    || arrays[5].length() != stateCount + 2L
+                    || arrays[7].length() != stateCount + 2L) {
+                throw new IOException(file + ": Snapshot is corrupted.");
+            }
+            return new OffHeapAutomaton(stateCount, startingStates, arrays);
+        }
+    }
+
+    /**
+     * Closes the automaton, so later queries throw an
+     * {@link IllegalStateException}. Queries already running still complete
+     * normally, since the memory stays valid until the automaton is no
+     * longer referenced. Calling this method more than once has no effect.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+
+    /**
+     * Default getter for the number of states.
+     *
+     * @return The number of states.
+     */
+    public int getStateCount() {
+        return this.stateCount;
+    }
+
+    /**
+     * Creates a view of a single state as a {@link State} object, holding
+     * all transitions leaving it and its lambda closure. The targets of the
+     * transitions only carry their number, so the view does not copy more
+     * than the state itself. To follow a transition, get its target with
+     * this method again.
+     *
+     * @param number The number of the state.
+     * @return A new object for the state.
+     * @throws IllegalArgumentException If the state does not exist.
+     * @throws IllegalStateException    If the automaton was closed.
+     */
+    public State getState(int number) {
+        checkOpen();
+        if (number <= 0 || number > this.stateCount) {
+            throw new IllegalArgumentException(
+                    "State " + number + " does not exist.");
+        }
+        State state = new State(number);
+        for (long j = this.edgeOffsets.getLong(number);
+             j < this.edgeOffsets.getLong(number + 1); j++) {
+            int target = this.edgeTargets.getInt(j);
+            state.addTransition(new Transition(state,
+                    target == number ? state : new State(target),
+                    this.edgeSymbols.getChar(2 * j),
+                    this.edgeSymbols.getChar(2 * j + 1)));
+        }
+        long from = this.closureOffsets.getLong(number);
+        long to = this.closureOffsets.getLong(number + 1);
+        if (to - from > 1) {
+            BitSet closure = new BitSet(this.stateCount + 1);
+            for (long j = from; j < to; j++) {
+                closure.set(this.closures.getInt(j));
+            }
+            state.setClosure(closure);
+        }
+        return state;
+    }
+
+    /**
+     * Generates a string representation of the automaton.
+     *
+     * @return A string including all transitions in the automaton.
+     * @throws IllegalStateException If the automaton was closed.
+     */
+    @Override
+    public String toString() {
+        checkOpen();
+        StringBuilder sb = new StringBuilder();
+        for (int s = 1; s <= this.stateCount; s++) {
+            for (long j = this.edgeOffsets.getLong(s);
+                 j < this.edgeOffsets.getLong(s + 1); j++) {
+                char first = this.edgeSymbols.getChar(2 * j);
+                char last = this.edgeSymbols.getChar(2 * j + 1);
+                sb.append("(").append(s).append(", ")
+                        .append(this.edgeTargets.getInt(j)).append(") ");
+                if (first == last) {
+                    sb.append(first);
+                } else {
+                    sb.append('[').append(first).append('-').append(last)
+                            .append(']');
+                }
+                sb.append(System.lineSeparator());
+            }
+        }
+        return sb.toString();
+    }
+
+    private int run(String word, boolean wholeWord) {
+        checkOpen();
+        StateSet active = new StateSet();
+        StateSet next = new StateSet();
+        for (int state : this.startingStates) {
+            addClosure(state, active);
+        }
+        int length = isAccepting(active) ? 0 : -1;
+        for (int i = 0; i < word.length() && active.size > 0; i++) {
+            char symbol = word.charAt(i);
+            next.clear();
+            for (int k = 0; k < active.size; k++) {
+                long range = findRange(active.members[k], symbol);
+                if (range < 0) {
+                    continue;
+                }
+                for (long j = this.targetOffsets.getLong(range);
+                     j < this.targetOffsets.getLong(range + 1); j++) {
+                    int target = this.targets.getInt(j);
+                    if (!next.contains(target)) {
+                        addClosure(target, next);
+                    }
+                }
+            }
+            StateSet swap = active;
+            active = next;
+            next = swap;
+            if (isAccepting(active)) {
+                length = i + 1;
+            } else if (wholeWord && active.size == 0) {
+                return -1;
+            }
+        }
+        if (wholeWord) {
+            return isAccepting(active) ? word.length() : -1;
+        }
+        return length;
+    }
+
+    private void addClosure(int state, StateSet set) {
+        for (long j = this.closureOffsets.getLong(state);
+             j < this.closureOffsets.getLong(state + 1); j++) {
+            set.add(this.closures.getInt(j));
+        }
+    }
+
+    private boolean isAccepting(StateSet set) {
+        for (int k = 0; k < set.size; k++) {
+            int state = set.members[k];
+            if ((this.endStates.getLong(state >>> 6) & (1L << state)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long findRange(int state, char symbol) {
+        long low = this.rangeOffsets.getLong(state);
+        long high = this.rangeOffsets.getLong(state + 1) - 1;
+        long first = low;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            if (this.rangeStarts.getChar(middle) <= symbol) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high >= first ? high : -1;
+    }
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("Automaton has been closed.");
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+                                  Path file) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException(file + ": File is truncated.");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static int[] bounds(State state) {
+        Collection<Transition> transitions = state.getSymbolTransitions();
+        int[] bounds = new int[2 * transitions.size()];
+        int count = 0;
+        for (Transition t : transitions) {
+            bounds[count++] = t.getSymbol();
+            bounds[count++] = t.getLastSymbol() + 1;
+        }
+        Arrays.sort(bounds);
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if ((size == 0 || bounds[size - 1] != bounds[i])
+                    && bounds[i] <= Character.MAX_VALUE) {
+                bounds[size++] = bounds[i];
+            }
+        }
+        return Arrays.copyOf(bounds, size);
+    }
+
+    private static List<Integer> targetsOf(State state, char symbol) {
+        List<Integer> targets = new ArrayList<>();
+        for (Transition t : state.getSymbolTransitions()) {
+            if (t.accepts(symbol)) {
+                targets.add(t.getTarget().getNumber());
+            }
+        }
+        Collections.sort(targets);
+        return targets;
+    }
+
+    /**
+     * Builder creating an off-heap automaton without a copy of it on the
+     * heap. Final states and transitions are written to off-heap memory as
+     * they are added, the transitions in blocks of fixed size. Then
+     * {@link Builder#build()} sorts the transitions by source with a
+     * counting sort, and sizes and fills the arrays of the automaton in two
+     * passes, like {@link OffHeapAutomaton#of(State[], BitSet, BitSet)}. The
+     * heap memory needed grows with the number of starting states, the
+     * number of transitions leaving a single state and the size of a single
+     * lambda closure only.
+     */
+    public static final class Builder implements AutomatonBuilder {
+        private static final int BLOCK_SIZE = 1 << 14;
+
+        private final int stateCount;
+        private final Alphabet alphabet;
+        private final OffHeapArray endStates;
+        private final List<OffHeapArray> blocks = new ArrayList<>();
+        private int[] startingStates = new int[4];
+        private int startingCount = 0;
+        private long transitionCount = 0;
+
+        /**
+         * General purpose constructor for the builder.
+         *
+         * @param stateCount Number of states the automaton should consist of.
+         */
+        public Builder(int stateCount) {
+            this(stateCount, Alphabet.DEFAULT);
+        }
+
+        /**
+         * Constructor for a builder of an automaton over a custom alphabet.
+         *
+         * @param stateCount Number of states the automaton should consist of.
+         * @param alphabet   The symbols transitions may read.
+         * @throws IllegalArgumentException If the number of states is
+         *                                  negative or the alphabet contains
+         *                                  {@link LambdaNFA#LAMBDA_SYMBOL}.
+         */
+        public Builder(int stateCount, Alphabet alphabet) {
+            if (stateCount < 0 || stateCount == Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        "Invalid number of states " + stateCount + ".");
+            }
+            if (alphabet.contains(LambdaNFA.LAMBDA_SYMBOL)) {
+                throw new IllegalArgumentException("Alphabet may not contain "
+                        + LambdaNFA.LAMBDA_SYMBOL + ".");
+            }
+            this.stateCount = stateCount;
+            this.alphabet = alphabet;
+            this.endStates = new OffHeapArray((stateCount + 64L) / 64, 8);
+        }
+
+        /**
+         * Adds a state to the set of starting states.
+         *
+         * @param state The number of the state.
+         * @return This builder.
+         */
+        @Override
+        public Builder addStartingState(int state) {
+            checkState(state);
+            if (this.startingCount == this.startingStates.length) {
+                this.startingStates = Arrays.copyOf(this.startingStates,
+                        2 * this.startingCount);
+            }
+            this.startingStates[this.startingCount++] = state;
+            return this;
+        }
+
+        /**
+         * Adds a state to the set of final states.
+         *
+         * @param state The number of the state.
+         * @return This builder.
+         */
+        @Override
+        public Builder addEndState(int state) {
+            checkState(state);
+            this.endStates.setLong(state >>> 6,
+                    this.endStates.getLong(state >>> 6) | 1L << state);
+            return this;
+        }
+
+        /**
+         * Adds a single transition. Unlike {@link LambdaNFA.Builder}, it is
+         * validated immediately, since it is only written to off-heap memory.
+         *
+         * @param source The source state.
+         * @param target The target state.
+         * @param symbol The symbol to read.
+         * @return This builder.
+         * @throws IllegalArgumentException If the transition is not valid.
+         */
+        public Builder addTransition(int source, int target, char symbol) {
+            return addTransition(source, target, symbol, symbol);
+        }
+
+        /**
+         * Adds a single transition over a range of symbols. Unlike
+         * {@link LambdaNFA.Builder}, it is validated immediately, since it
+         * is only written to off-heap memory.
+         *
+         * @param source The source state.
+         * @param target The target state.
+         * @param first  The first symbol of the range.
+         * @param last   The last symbol of the range, inclusive.
+         * @return This builder.
+         * @throws IllegalArgumentException If the transition is not valid.
+         */
+        @Override
+        public Builder addTransition(int source, int target, char first,
+                                     char last) {
+            if (!isValidTransition(source, target, first, last)) {
+                throw new IllegalArgumentException("Transition (" + source
+                        + ", " + target + ") " + first
+                        + (first == last ? "" : "-" + last)
+                        + " is not valid.");
+            }
+            int index = (int) (this.transitionCount % BLOCK_SIZE);
+            if (index == 0) {
+                this.blocks.add(new OffHeapArray(2L * BLOCK_SIZE, 8));
+            }
+            OffHeapArray block = this.blocks.get(this.blocks.size() - 1);
+            block.setLong(2L * index, (long) source << 32 | target);
+            block.setLong(2L * index + 1, first << 16 | last);
+            ++this.transitionCount;
+            return this;
+        }
+
+        /**
+         * Creates the automaton. The builder can still be used afterwards.
+         *
+         * @return The new automaton, which has to be closed.
+         * @throws IllegalStateException If no starting state was added.
+         */
+        public OffHeapAutomaton build() {
+            if (this.startingCount == 0) {
+                throw new IllegalStateException(
+                        "No starting state was added.");
+            }
+            int n = this.stateCount;
+            long m = this.transitionCount;
+            OffHeapArray finals = new OffHeapArray(this.endStates.length(), 8);
+            for (long i = 0; i < finals.length(); i++) {
+                finals.setLong(i, this.endStates.getLong(i));
+            }
+
+            // Counting sort by source: the offsets first hold the number of
+            // transitions per state, then the end of their segment, and
+            // finally its start once all transitions are placed.
+            OffHeapArray edgeOffsets = new OffHeapArray(n + 2L, 8);
+            for (long e = 0; e < m; e++) {
+                int source = (int) (word(e, 0) >>> 32);
+                edgeOffsets.setLong(source, edgeOffsets.getLong(source) + 1);
+            }
+            long sum = 0;
+            for (int s = 0; s <= n + 1; s++) {
+                sum += edgeOffsets.getLong(s);
+                edgeOffsets.setLong(s, sum);
+            }
+            OffHeapArray edgeTargets = new OffHeapArray(m, 4);
+            OffHeapArray edgeSymbols = new OffHeapArray(2 * m, 2);
+            for (long e = 0; e < m; e++) {
+                long ends = word(e, 0);
+                long symbols = word(e, 1);
+                int source = (int) (ends >>> 32);
+                long edge = edgeOffsets.getLong(source) - 1;
+                edgeOffsets.setLong(source, edge);
+                edgeTargets.setInt(edge, (int) ends);
+                edgeSymbols.setChar(2 * edge, (char) (symbols >>> 16));
+                edgeSymbols.setChar(2 * edge + 1, (char) symbols);
+            }
+            for (int s = 1; s <= n; s++) {
+                sortEdges(edgeOffsets.getLong(s), edgeOffsets.getLong(s + 1),
+                        edgeTargets, edgeSymbols);
+            }
+
+            StateSet closure = new StateSet();
+            long rangeCount = 0;
+            long targetCount = 0;
+            long closureCount = 0;
+            for (int s = 1; s <= n; s++) {
+                long from = edgeOffsets.getLong(s);
+                long to = edgeOffsets.getLong(s + 1);
+                int[] bounds = bounds(from, to, edgeSymbols);
+                rangeCount += bounds.length;
+                for (int bound : bounds) {
+                    for (long j = from; j < to; j++) {
+                        if (accepts(edgeSymbols, j, (char) bound)) {
+                            ++targetCount;
+                        }
+                    }
+                }
+                closure(s, closure, edgeOffsets, edgeTargets, edgeSymbols);
+                closureCount += closure.size;
+            }
+
+            OffHeapArray rangeOffsets = new OffHeapArray(n + 2L, 8);
+            OffHeapArray rangeStarts = new OffHeapArray(rangeCount, 2);
+            OffHeapArray targetOffsets = new OffHeapArray(rangeCount + 1, 8);
+            OffHeapArray targets = new OffHeapArray(targetCount, 4);
+            OffHeapArray closureOffsets = new OffHeapArray(n + 2L, 8);
+            OffHeapArray closures = new OffHeapArray(closureCount, 4);
+            long range = 0;
+            long target = 0;
+            long member = 0;
+            for (int s = 1; s <= n; s++) {
+                long from = edgeOffsets.getLong(s);
+                long to = edgeOffsets.getLong(s + 1);
+                rangeOffsets.setLong(s, range);
+                for (int bound : bounds(from, to, edgeSymbols)) {
+                    rangeStarts.setChar(range, (char) bound);
+                    targetOffsets.setLong(range, target);
+                    for (long j = from; j < to; j++) {
+                        if (accepts(edgeSymbols, j, (char) bound)) {
+                            targets.setInt(target++, edgeTargets.getInt(j));
+                        }
+                    }
+                    ++range;
+                }
+
+                closure(s, closure, edgeOffsets, edgeTargets, edgeSymbols);
+                int[] members = Arrays.copyOfRange(closure.members, 1,
+                        closure.size);
+                Arrays.sort(members);
+                closureOffsets.setLong(s, member);
+                closures.setInt(member++, s);
+                for (int t : members) {
+                    closures.setInt(member++, t);
+                }
+            }
+            rangeOffsets.setLong(n + 1, range);
+            targetOffsets.setLong(range, target);
+            closureOffsets.setLong(n + 1, member);
+
+            int[] starting = Arrays.copyOf(this.startingStates,
+                    this.startingCount);
+            Arrays.sort(starting);
+            int size = 0;
+            for (int state : starting) {
+                if (size == 0 || starting[size - 1] != state) {
+                    starting[size++] = state;
+                }
+            }
+            return new OffHeapAutomaton(n, Arrays.copyOf(starting, size),
+                    new OffHeapArray[]{finals, rangeOffsets, rangeStarts,
+                            targetOffsets, targets, closureOffsets, closures,
+                            edgeOffsets, edgeTargets, edgeSymbols});
+        }
+
+        private boolean isValidTransition(int source, int target, char first,
+                                          char last) {
+            if (source <= 0 || source > this.stateCount || target <= 0
+                    || target > this.stateCount) {
+                return false;
+            }
+            if (first == LambdaNFA.LAMBDA_SYMBOL) {
+                return last == first;
+            }
+            return this.alphabet.contains(first)
+                    && (first == last || this.alphabet.contains(first, last));
+        }
+
+        private void checkState(int state) {
+            if (state <= 0 || state > this.stateCount) {
+                throw new IllegalArgumentException(
+                        "State " + state + " does not exist.");
+            }
+        }
+
+        private long word(long transition, int offset) {
+            return this.blocks.get((int) (transition / BLOCK_SIZE))
+                    .getLong(2 * (transition % BLOCK_SIZE) + offset);
+        }
+
+        /**
+         * Sorts the transitions of a state in the order of
+         * {@link Transition#compareTo(Transition)}, which is the order they
+         * are printed in.
+         */
+        private static void sortEdges(long from, long to,
+                                      OffHeapArray edgeTargets,
+                                      OffHeapArray edgeSymbols) {
+            long[] keys = new long[(int) (to - from)];
+            for (int k = 0; k < keys.length; k++) {
+                long edge = from + k;
+                char first = edgeSymbols.getChar(2 * edge);
+                long symbol = first == LambdaNFA.LAMBDA_SYMBOL ? 0 : first + 1;
+                keys[k] = (long) edgeTargets.getInt(edge) << 34
+                        | symbol << 17 | edgeSymbols.getChar(2 * edge + 1);
+            }
+            Arrays.sort(keys);
+            for (int k = 0; k < keys.length; k++) {
+                int symbol = (int) (keys[k] >>> 17) & 0x1FFFF;
+                edgeTargets.setInt(from + k, (int) (keys[k] >>> 34));
+                edgeSymbols.setChar(2 * (from + k), symbol == 0
+                        ? LambdaNFA.LAMBDA_SYMBOL : (char) (symbol - 1));
+                edgeSymbols.setChar(2 * (from + k) + 1,
+                        (char) (keys[k] & 0xFFFF));
+            }
+        }
+
+        private static int[] bounds(long from, long to,
+                                    OffHeapArray edgeSymbols) {
+            int[] bounds = new int[(int) (2 * (to - from))];
+            int count = 0;
+            for (long j = from; j < to; j++) {
+                char first = edgeSymbols.getChar(2 * j);
+                if (first != LambdaNFA.LAMBDA_SYMBOL) {
+                    bounds[count++] = first;
+                    bounds[count++] = edgeSymbols.getChar(2 * j + 1) + 1;
+                }
+            }
+            Arrays.sort(bounds, 0, count);
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                if ((size == 0 || bounds[size - 1] != bounds[i])
+                        && bounds[i] <= Character.MAX_VALUE) {
+                    bounds[size++] = bounds[i];
+                }
+            }
+            return Arrays.copyOf(bounds, size);
+        }
+
+        private static boolean accepts(OffHeapArray edgeSymbols, long edge,
+                                       char symbol) {
+            char first = edgeSymbols.getChar(2 * edge);
+            return first != LambdaNFA.LAMBDA_SYMBOL && first <= symbol
+                    && symbol <= edgeSymbols.getChar(2 * edge + 1);
+        }
+
+        /**
+         * Collects the lambda closure of a state by breadth-first search, so
+         * the state itself is the first member of the set.
+         */
+        private static void closure(int state, StateSet closure,
+                                    OffHeapArray edgeOffsets,
+                                    OffHeapArray edgeTargets,
+                                    OffHeapArray edgeSymbols) {
+            closure.clear();
+            closure.add(state);
+            for (int k = 0; k < closure.size; k++) {
+                int current = closure.members[k];
+                for (long j = edgeOffsets.getLong(current);
+                     j < edgeOffsets.getLong(current + 1); j++) {
+                    if (edgeSymbols.getChar(2 * j)
+                            == LambdaNFA.LAMBDA_SYMBOL) {
+                        closure.add(edgeTargets.getInt(j));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A set of state numbers which also lists its members, for a single
+     * step of a query. Its size depends on the number of active states
+     * only. Open addressing with linear probing; {@code 0} marks a free
+     * slot, since state numbers start at 1.
+     */
+    private static final class StateSet {
+        private int[] slots = new int[16];
+        private int[] members = new int[8];
+        private int size = 0;
+
+        private boolean contains(int state) {
+            int mask = this.slots.length - 1;
+            for (int i = hash(state) & mask; this.slots[i] != 0;
+                 i = (i + 1) & mask) {
+                if (this.slots[i] == state) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void add(int state) {
+            int mask = this.slots.length - 1;
+            int i = hash(state) & mask;
+            while (this.slots[i] != 0) {
+                if (this.slots[i] == state) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            this.slots[i] = state;
+            if (this.size == this.members.length) {
+                this.members = Arrays.copyOf(this.members, 2 * this.size);
+            }
+            this.members[this.size++] = state;
+            if (2 * this.size > this.slots.length) {
+                rehash();
+            }
+        }
+
+        private void clear() {
+            if (this.size > 0) {
+                Arrays.fill(this.slots, 0);
+                this.size = 0;
+            }
+        }
+
+        private void rehash() {
+            this.slots = new int[2 * this.slots.length];
+            int mask = this.slots.length - 1;
+            for (int k = 0; k < this.size; k++) {
+                int i = hash(this.members[k]) & mask;
+                while (this.slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                this.slots[i] = this.members[k];
+            }
+        }
+
+        private static int hash(int state) {
+            return state * 0x9E3779B9;
+        }
+    }
+}
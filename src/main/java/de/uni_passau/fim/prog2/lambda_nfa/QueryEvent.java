@@ -0,0 +1,29 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a single membership or prefix query. Only
+ * emitted while {@link Statistics} are enabled.
+ */
+@Name("de.uni_passau.fim.prog2.lambda_nfa.Query")
+@Label("Lambda NFA Query")
+@Category("Lambda NFA")
+@Description("A call of isElement or longestPrefix")
+final class QueryEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Word Length")
+    int wordLength;
+
+    @Label("Result Length")
+    @Description("Length of the accepted prefix, or -1 if there is none")
+    int resultLength;
+
+    transient long startNanos;
+}
@@ -0,0 +1,289 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the commands of the {@link Shell} to many clients at once over a
+ * local socket, so clients share automata instead of each building their
+ * own. Requests are parsed by {@link Command} like lines of the shell.
+ * Automata are kept by name in a registry shared by all connections; every
+ * connection starts on the automaton named {@value #DEFAULT_NAME} and may
+ * switch with {@code USE <name>}. INIT and GENERATE create
+ * {@link ConcurrentLambdaNFA}s, so queries run concurrently on immutable
+ * snapshots while ADD publishes a new one. LOAD maps an
+ * {@link OffHeapAutomaton}, which cannot be modified or scanned. An
+ * automaton replaced by another one is not closed, since other connections
+ * may still be querying it; its memory is released once it is unreachable.
+ *
+ * <p>The protocol is line based. Most requests are answered by exactly one
+ * line: {@code OK} for INIT, ADD, SAVE, LOAD, GENERATE, USE and STATS with an
+ * argument, {@code true} or {@code false} for CHECK, the prefix or {@code -}
+ * for PREFIX, and {@code Error! ...} if the request fails, also if it fails
+ * unexpectedly, so the connection stays open. SCAN answers with the start
+ * and end of every match on a line of its own, DISPLAY with the transitions,
+ * STATS without argument with the statistics and HELP with the help dialog,
+ * each followed by a line containing a single dot. Requests may be
+ * pipelined: responses are buffered while further requests are already
+ * waiting, and written once all received requests are answered.
+ */
+final class Server {
+    /**
+     * The name of the automaton every connection starts on.
+     */
+    static final String DEFAULT_NAME = "default";
+
+    private static final Map<String, Automaton> automata =
+            new ConcurrentHashMap<>();
+
+    private Server() throws InstantiationException {
+        throw new InstantiationException("Server may not be instantiated.");
+    }
+
+    /**
+     * Listens on {@code address} and serves every connection on a thread of
+     * its own until the process ends.
+     *
+     * @param address A port number to listen on the loopback interface, or
+     *                the path of a Unix domain socket to be created.
+     * @throws IOException If the socket cannot be opened.
+     */
+    static void serve(String address) throws IOException {
+        SocketAddress socketAddress = parseAddress(address);
+        ExecutorService connections = newConnectionExecutor();
+        try (ServerSocketChannel server =
+                     socketAddress instanceof UnixDomainSocketAddress
+                             ? ServerSocketChannel.open(
+                             StandardProtocolFamily.UNIX)
+                             : ServerSocketChannel.open()) {
+            server.bind(socketAddress);
+            if (socketAddress instanceof UnixDomainSocketAddress unix) {
+                unix.getPath().toFile().deleteOnExit();
+            }
+            System.err.println("Listening on " + server.getLocalAddress());
+            while (true) {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> handle(channel));
+            }
+        } finally {
+            connections.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses the address of a server.
+     *
+     * @param address A port number on the loopback interface, or the path
+     *                of a Unix domain socket.
+     * @return The socket address.
+     */
+    static SocketAddress parseAddress(String address) {
+        if (!address.isEmpty() && address.chars().allMatch(
+                Character::isDigit)) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                    Integer.parseInt(address));
+        }
+        return UnixDomainSocketAddress.of(address);
+    }
+
+    /**
+     * Creates the executor running the connections. Every connection gets
+     * a thread of its own, which is a virtual thread if the running Java
+     * version supports them. They are looked up reflectively, so the code
+     * still compiles for Java 17.
+     *
+     * @return The executor.
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException
+                 | InvocationTargetException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static void handle(SocketChannel channel) {
+        try (channel;
+             BufferedReader in = new BufferedReader(Channels.newReader(
+                     channel, StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(Channels.newWriter(
+                     channel, StandardCharsets.UTF_8))) {
+            String name = DEFAULT_NAME;
+            String request;
+            while ((request = in.readLine()) != null) {
+                String response;
+                try {
+                    Command command = Command.parse(request);
+                    if (command.getType() == Command.Type.QUIT) {
+                        break;
+                    }
+                    if (command.getType() == Command.Type.USE) {
+                        name = command.getName();
+                        response = "OK\n";
+                    } else {
+                        response = execute(name, command);
+                    }
+                } catch (IllegalArgumentException e) {
+                    response = error(e.getMessage());
+                } catch (RuntimeException e) {
+                    System.err.println("Request failed: " + e);
+                    response = error(e.getMessage() != null ? e.getMessage()
+                            : e.getClass().getSimpleName());
+                }
+                out.write(response);
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Connection failed: " + e.getMessage());
+        }
+    }
+
+    private static String execute(String name, Command command) {
+        Automaton nfa = automata.get(name);
+        switch (command.getType()) {
+            case INIT -> {
+                automata.put(name, new ConcurrentLambdaNFA(command.getSize(),
+                        1, List.of(command.getSize())));
+                return "OK\n";
+            }
+            case GENERATE -> {
+                ConcurrentLambdaNFA generated = new ConcurrentLambdaNFA(
+                        Command.GENERATED_SIZE, 1,
+                        List.of(Command.GENERATED_SIZE));
+                ConcurrentLambdaNFA.Batch batch = generated.batch();
+                Command.generate(batch::addTransition);
+                batch.publish();
+                automata.put(name, generated);
+                return "OK\n";
+            }
+            case LOAD -> {
+                try {
+                    automata.put(name, OffHeapAutomaton.load(
+                            command.getFile()));
+                    return "OK\n";
+                } catch (IOException e) {
+                    return ioError(e);
+                }
+            }
+            case STATS -> {
+                if (command.getStatistics() != null) {
+                    Statistics.setEnabled(command.getStatistics());
+                    return "OK\n";
+                }
+                if (!Statistics.isEnabled()) {
+                    return error("Statistics are disabled. Enable them with"
+                            + " STATS ON.");
+                }
+                String report = Statistics.report();
+                Statistics.reset();
+                return report + ".\n";
+            }
+            case HELP -> {
+                return Command.HELP + ".\n";
+            }
+            default -> {
+            }
+        }
+        if (nfa == null) {
+            return error(Command.NOT_INITIALIZED);
+        }
+        switch (command.getType()) {
+            case ADD -> {
+                return add(nfa, command);
+            }
+            case CHECK -> {
+                return nfa.isElement(command.getWord()) + "\n";
+            }
+            case PREFIX -> {
+                String prefix = nfa.longestPrefix(command.getWord());
+                return (prefix == null ? "-" : prefix) + "\n";
+            }
+            case SCAN -> {
+                return scan(nfa, command);
+            }
+            case DISPLAY -> {
+                return nfa + ".\n";
+            }
+            case SAVE -> {
+                try {
+                    if (nfa instanceof ConcurrentLambdaNFA concurrent) {
+                        concurrent.save(command.getFile());
+                    } else {
+                        ((OffHeapAutomaton) nfa).save(command.getFile());
+                    }
+                    return "OK\n";
+                } catch (IOException e) {
+                    return ioError(e);
+                }
+            }
+            default -> {
+                return error("Not a valid command.");
+            }
+        }
+    }
+
+    private static String add(Automaton nfa, Command command) {
+        if (!(nfa instanceof ConcurrentLambdaNFA)) {
+            return error(Command.NOT_MODIFIABLE);
+        }
+        if (!nfa.isValidTransition(command.getSource(), command.getTarget(),
+                command.getSymbol())) {
+            return error(Command.INVALID_TRANSITION);
+        }
+        nfa.addTransition(command.getSource(), command.getTarget(),
+                command.getSymbol());
+        return "OK\n";
+    }
+
+    private static String scan(Automaton nfa, Command command) {
+        if (!(nfa instanceof ConcurrentLambdaNFA concurrent)) {
+            return error(Command.NOT_SCANNABLE);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Match match : concurrent.findAll(command.getWord(),
+                command.isAll() ? Match.Mode.ALL
+                        : Match.Mode.NON_OVERLAPPING)) {
+            sb.append(match.getStart()).append(' ').append(match.getEnd())
+                    .append('\n');
+        }
+        return sb.append(".\n").toString();
+    }
+
+    private static String ioError(IOException e) {
+        if (e instanceof NoSuchFileException) {
+            return error("No such file or directory: " + e.getMessage());
+        }
+        return error(e.getMessage());
+    }
+
+    private static String error(String message) {
+        return "Error! " + message + "\n";
+    }
+}
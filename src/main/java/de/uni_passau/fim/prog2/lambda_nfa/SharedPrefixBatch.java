@@ -0,0 +1,194 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Answers a batch of queries by walking the trie of all words depth-first,
+ * so a prefix shared by several words is simulated only once. The trie is
+ * not built explicitly: the words are sorted, and the longest common prefix
+ * of each word with its predecessor is the depth the walk returns to before
+ * descending along the new word. Once no state is active anymore, the whole
+ * subtree below is cut off. The number of steps is thus bounded by the
+ * number of trie nodes instead of the total length of the words.
+ *
+ * <p>Only the depths some later word returns to are kept on a stack of
+ * checkpoints, each holding the active states and the longest accepted
+ * prefix at that depth, and the sets of popped checkpoints are reused. The
+ * stack holds at most one checkpoint per word, and a single long word needs
+ * no more than the root, so the memory does not grow with the length of the
+ * words.
+ */
+final class SharedPrefixBatch {
+    private final FrontierSimulation simulation;
+    private final int[] worklist;
+    private BitSet active;
+    private BitSet next;
+    private BitSet[] sets = new BitSet[4];
+    private int[] depths = new int[4];
+    private int[] longest = new int[4];
+    private int size = 0;
+
+    private SharedPrefixBatch(FrontierSimulation simulation) {
+        this.simulation = simulation;
+        this.worklist = new int[simulation.capacity()];
+        this.active = new BitSet(simulation.capacity());
+        this.next = new BitSet(simulation.capacity());
+    }
+
+    /**
+     * Computes the lengths of the longest accepted prefixes of all words.
+     * A word is accepted as a whole if and only if its result equals its
+     * length.
+     *
+     * @param simulation The simulation of the automaton.
+     * @param words      The words whose prefixes will be checked.
+     * @return For every word, at the same index, the length of its longest
+     * accepted prefix, or {@code -1} if there is none.
+     */
+    static int[] longestPrefixLengths(FrontierSimulation simulation,
+                                      CharSequence[] words) {
+        return new SharedPrefixBatch(simulation).run(words);
+    }
+
+    private int[] run(CharSequence[] words) {
+        int[] order = sortedOrder(words);
+        int n = order.length;
+        int[] returns = new int[n + 1];
+        for (int p = 1; p < n; p++) {
+            returns[p] = commonPrefixLength(words[order[p - 1]],
+                    words[order[p]]);
+        }
+        int[] nextLower = nextLower(returns, n);
+
+        int[] results = new int[n];
+        int[] marks = new int[4];
+        this.simulation.start(this.active, this.worklist);
+        push(0, this.simulation.isAccepting(this.active) ? 0 : -1);
+        for (int p = 0; p < n; p++) {
+            CharSequence word = words[order[p]];
+            while (this.depths[this.size - 1] > returns[p]) {
+                --this.size;
+            }
+            int top = this.size - 1;
+            int depth = this.depths[top];
+            int longest = this.longest[top];
+            this.active.clear();
+            this.active.or(this.sets[top]);
+
+            // The depths later words return to along this word, shallowest
+            // last: the decreasing minima of the following return depths.
+            int markCount = 0;
+            for (int q = p + 1; q < n && returns[q] > depth;
+                 q = nextLower[q]) {
+                if (markCount == marks.length) {
+                    marks = Arrays.copyOf(marks, 2 * markCount);
+                }
+                marks[markCount++] = returns[q];
+            }
+            while (true) {
+                // Once no state is active, a single checkpoint stands for
+                // all deeper marks, since nothing changes below it.
+                if (markCount > 0 && (marks[markCount - 1] == depth
+                        || this.active.isEmpty())) {
+                    if (depth > this.depths[this.size - 1]) {
+                        push(depth, longest);
+                    }
+                    markCount = this.active.isEmpty() ? 0 : markCount - 1;
+                }
+                if (depth == word.length() || this.active.isEmpty()) {
+                    break;
+                }
+                this.simulation.step(this.active, word.charAt(depth),
+                        this.next, this.worklist);
+                BitSet swap = this.active;
+                this.active = this.next;
+                this.next = swap;
+                ++depth;
+                if (this.simulation.isAccepting(this.active)) {
+                    longest = depth;
+                }
+            }
+            results[order[p]] = longest;
+        }
+        return results;
+    }
+
+    private void push(int depth, int longest) {
+        if (this.size == this.depths.length) {
+            int length = 2 * this.size;
+            this.sets = Arrays.copyOf(this.sets, length);
+            this.depths = Arrays.copyOf(this.depths, length);
+            this.longest = Arrays.copyOf(this.longest, length);
+        }
+        if (this.sets[this.size] == null) {
+            this.sets[this.size] = new BitSet(this.simulation.capacity());
+        } else {
+            this.sets[this.size].clear();
+        }
+        this.sets[this.size].or(this.active);
+        this.depths[this.size] = depth;
+        this.longest[this.size] = longest;
+        ++this.size;
+    }
+
+    /**
+     * Links every position to the next one with a smaller return depth, so
+     * the chain starting after a word visits exactly the depths later words
+     * return to along it.
+     */
+    private static int[] nextLower(int[] returns, int n) {
+        int[] nextLower = new int[n];
+        int[] stack = new int[n];
+        int height = 0;
+        for (int p = n - 1; p > 0; p--) {
+            while (height > 0 && returns[stack[height - 1]] >= returns[p]) {
+                --height;
+            }
+            nextLower[p] = height == 0 ? n : stack[height - 1];
+            stack[height++] = p;
+        }
+        return nextLower;
+    }
+
+    /**
+     * Sorts the indices of the words by the words they refer to, with a
+     * merge sort on primitive indices.
+     */
+    private static int[] sortedOrder(CharSequence[] words) {
+        int[] order = new int[words.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[order.length];
+        for (int width = 1; width < order.length; width *= 2) {
+            for (int from = 0; from < order.length; from += 2 * width) {
+                int middle = Math.min(from + width, order.length);
+                int to = Math.min(from + 2 * width, order.length);
+                int i = from;
+                int j = middle;
+                for (int k = from; k < to; k++) {
+                    if (j == to || i < middle && CharSequence.compare(
+                            words[order[i]], words[order[j]]) <= 0) {
+                        buffer[k] = order[i++];
+                    } else {
+                        buffer[k] = order[j++];
+                    }
+                }
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+
+    private static int commonPrefixLength(CharSequence a, CharSequence b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            ++i;
+        }
+        return i;
+    }
+}
@@ -1,17 +1,33 @@
 package de.uni_passau.fim.prog2.lambda_nfa;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.NoSuchFileException;
 import java.util.List;
-import java.util.Scanner;
 
 /**
  * Command line interface used to communicate with a NFA. Enforces additional
- * conventions inside the automaton.
+ * conventions inside the automaton. Started with {@code --batch}, no prompts
+ * are printed and all output is buffered until the input ends, which suits
+ * piped scripts. {@code --compact} implies batch mode and prints the results
+ * of CHECK and PREFIX as bare {@code true}/{@code false} and prefix lines,
+ * with {@code -} for a missing prefix. {@code --serve <address>} serves the
+ * commands to many clients over a local socket instead, see {@link Server},
+ * and {@code --load <address> [connections] [requests]} measures a running
+ * server, see {@link LoadGenerator}.
  */
 final class Shell {
     private static final String PROMPT = "nfa> ";
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
 
-    private static LambdaNFA nfa = null;
+    private static Automaton nfa = null;
     private static boolean running = true;
+    private static boolean compact = false;
+    private static PrintWriter out;
 
     private Shell() throws InstantiationException {
         throw new InstantiationException("Shell may not be instantiated.");
@@ -21,176 +37,225 @@ final class Shell {
      * Entrypoint for the program.
      *
      * @param args command line arguments
+     * @throws IOException          If reading from standard input or from a
+     *                              socket fails.
+     * @throws InterruptedException If interrupted while generating load.
      */
-    public static void main(String[] args) {
-        Scanner in = new Scanner(System.in);
-        while (running) {
-            System.out.print(PROMPT);
-            String userInput = in.nextLine();
-            if (userInput == null || userInput.length() == 0) {
-                printErr("Invalid! Try again.");
-                continue;
-            }
-            String[] slices = userInput.trim().split("\s+");
-            if (slices.length == 0) {
-                printErr("Invalid! Try again.");
-                continue;
+    public static void main(String[] args)
+            throws IOException, InterruptedException {
+        if (args.length >= 2 && args[0].equals("--serve")) {
+            Server.serve(args[1]);
+            return;
+        }
+        if (args.length >= 2 && args[0].equals("--load")) {
+            try {
+                LoadGenerator.run(args[1],
+                        args.length > 2 ? Integer.parseInt(args[2]) : 8,
+                        args.length > 3 ? Integer.parseInt(args[3]) : 10000);
+            } catch (NumberFormatException e) {
+                System.err.println("Error! Counts have to be integers.");
             }
-            String command = slices[0];
-            switch (command.toUpperCase()) {
-                case "INIT" -> tryInit(slices);
-                case "ADD" -> tryAdd(slices);
-                case "CHECK" -> checkCommand(userInput);
-                case "PREFIX" -> prefixCommand(userInput);
-                case "DISPLAY" -> displayCommand();
-                case "GENERATE" -> generateCommand();
-                case "HELP" -> helpCommand();
-                case "QUIT" -> quitCommand();
-                default -> printErr("Not a valid command.");
+            return;
+        }
+        boolean batch = false;
+        for (String arg : args) {
+            switch (arg) {
+                case "--batch" -> batch = true;
+                case "--compact" -> {
+                    batch = true;
+                    compact = true;
+                }
+                default -> {
+                    System.err.println("Error! Unknown option " + arg);
+                    return;
+                }
             }
         }
-    }
-
-    private static void tryInit(String[] slices) {
-        if (slices.length < 2) {
-            printErr("Not enough arguments supplied.");
-            return;
+        BufferedReader in =
+                new BufferedReader(new InputStreamReader(System.in));
+        if (batch) {
+            out = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(System.out), OUTPUT_BUFFER_SIZE));
+        } else {
+            out = new PrintWriter(System.out, true);
         }
         try {
-            int size = Integer.parseInt(slices[1]);
-            if (size > 0) {
-                initCommand(size);
-            } else {
-                printErr("Size has to be greater than 0.");
+            while (running) {
+                if (!batch) {
+                    out.print(PROMPT);
+                    out.flush();
+                }
+                String userInput = in.readLine();
+                if (userInput == null) {
+                    break;
+                }
+                execute(userInput);
             }
-        } catch (NumberFormatException e) {
-            printErr("First argument has to be an integer");
+        } finally {
+            out.flush();
         }
     }
 
-    private static void initCommand(Integer size) {
-        nfa = new LambdaNFA(size, 1, List.of(size));
+    private static void execute(String userInput) {
+        Command command;
+        try {
+            command = Command.parse(userInput);
+        } catch (IllegalArgumentException e) {
+            printErr(e.getMessage());
+            return;
+        }
+        switch (command.getType()) {
+            case INIT -> replaceAutomaton(new LambdaNFA(command.getSize(), 1,
+                    List.of(command.getSize())));
+            case ADD -> addCommand(command);
+            case CHECK -> checkCommand(command);
+            case PREFIX -> prefixCommand(command);
+            case SCAN -> scanCommand(command);
+            case DISPLAY -> displayCommand();
+            case SAVE -> saveCommand(command);
+            case LOAD -> loadCommand(command);
+            case GENERATE -> generateCommand();
+            case STATS -> statsCommand(command);
+            case HELP -> out.println(Command.HELP);
+            case QUIT -> running = false;
+            default -> printErr("Not a valid command.");
+        }
     }
 
-    private static void tryAdd(String[] slices) {
-        if (slices.length < 4) {
-            printErr("Not enough arguments supplied.");
+    private static void addCommand(Command command) {
+        if (nfa == null) {
+            printErr(Command.NOT_INITIALIZED);
             return;
         }
-        if (slices[3].length() > 1) {
-            printErr("Third argument needs to be a character.");
+        if (!(nfa instanceof LambdaNFA)) {
+            printErr(Command.NOT_MODIFIABLE);
             return;
         }
-        try {
-            int source = Integer.parseInt(slices[1]);
-            int target = Integer.parseInt(slices[2]);
-            char symbol = slices[3].charAt(0);
-            addCommand(source, target, symbol);
-        } catch (NumberFormatException e) {
-            printErr("First and second argument have to be an integer");
+        if (nfa.isValidTransition(command.getSource(), command.getTarget(),
+                command.getSymbol())) {
+            nfa.addTransition(command.getSource(), command.getTarget(),
+                    command.getSymbol());
+        } else {
+            printErr(Command.INVALID_TRANSITION);
         }
     }
 
-    private static void addCommand(Integer source, Integer target,
-                                   char symbol) {
+    private static void checkCommand(Command command) {
         if (nfa == null) {
-            printErr("NFA has not been initialized.");
+            printErr(Command.NOT_INITIALIZED);
             return;
         }
-        if (nfa.isValidTransition(source, target, symbol)) {
-            nfa.addTransition(source, target, symbol);
+        boolean isElement = nfa.isElement(command.getWord());
+        if (compact) {
+            out.println(isElement);
         } else {
-            printErr("Transition provided is not valid.");
+            out.println(isElement ? "In language." : "Not in language.");
         }
     }
 
-    private static void checkCommand(String userInput) {
-        String word = extractWord(userInput);
-        if (word == null) return;
-        boolean isElement = nfa.isElement(word);
-        System.out.println(isElement ? "In language." : "Not in language.");
+    private static void prefixCommand(Command command) {
+        if (nfa == null) {
+            printErr(Command.NOT_INITIALIZED);
+            return;
+        }
+        String prefix = nfa.longestPrefix(command.getWord());
+        if (compact) {
+            out.println(prefix == null ? "-" : prefix);
+        } else if (prefix == null) {
+            out.println("No prefix in language.");
+        } else {
+            out.println("\"" + prefix + "\"");
+        }
     }
 
-    private static void prefixCommand(String userInput) {
-        String word = extractWord(userInput);
-        if (word == null) return;
-        String prefix = nfa.longestPrefix(word);
-        if (prefix == null) {
-            System.out.println("No prefix in language.");
-        } else {
-            System.out.println("\"" + prefix + "\"");
+    private static void scanCommand(Command command) {
+        if (nfa == null) {
+            printErr(Command.NOT_INITIALIZED);
+            return;
+        }
+        if (!(nfa instanceof LambdaNFA lambdaNFA)) {
+            printErr(Command.NOT_SCANNABLE);
+            return;
+        }
+        String text = command.getWord();
+        List<Match> matches = lambdaNFA.findAll(text, command.isAll()
+                ? Match.Mode.ALL : Match.Mode.NON_OVERLAPPING);
+        for (Match match : matches) {
+            if (compact) {
+                out.println(match.getStart() + " " + match.getEnd());
+            } else {
+                out.println(match + " \""
+                        + text.substring(match.getStart(), match.getEnd())
+                        + "\"");
+            }
+        }
+        if (matches.isEmpty() && !compact) {
+            out.println("No match in text.");
         }
     }
 
     private static void displayCommand() {
         if (nfa == null) {
-            printErr("NFA has not been initialized.");
+            printErr(Command.NOT_INITIALIZED);
         } else {
-            System.out.print(nfa);
+            out.print(nfa);
         }
     }
 
-    private static void generateCommand() {
-        nfa = new LambdaNFA(5, 1, List.of(5));
-        nfa.addTransition(1, 2, '~');
-        nfa.addTransition(2, 2, '~');
-        nfa.addTransition(2, 3, 'a');
-        nfa.addTransition(3, 4, 'b');
-        nfa.addTransition(3, 4, '~');
-        nfa.addTransition(4, 5, 'a');
-        nfa.addTransition(2, 4, '~');
-        nfa.addTransition(4, 1, '~');
+    private static void saveCommand(Command command) {
+        try {
+            if (nfa instanceof LambdaNFA lambdaNFA) {
+                lambdaNFA.save(command.getFile());
+            } else if (nfa instanceof OffHeapAutomaton loaded) {
+                loaded.save(command.getFile());
+            } else {
+                printErr(Command.NOT_INITIALIZED);
+            }
+        } catch (NoSuchFileException e) {
+            printErr("No such file or directory: " + e.getMessage());
+        } catch (IOException e) {
+            printErr(e.getMessage());
+        }
     }
 
-    private static void helpCommand() {
-        System.out.println("""
-                Lambda NFA:
-                Available Commands:
-                                
-                                
-                INIT <n>:           Generates new automaton with n states.
-                                
-                ADD <i> <j> <c>:    Adds a new transition from state i to state
-                                    j with symbol c.
-                                    
-                CHECK "s":          Checks if a given word s is in the language
-                                    of L(A); A being the current automaton.
-                                    
-                PREFIX "s":         Prints the longest prefix of s that is part
-                                    of the language L(A); A being the current
-                                    automaton.
-                                    
-                DISPLAY:            Prints all transitions that make up the
-                                    automaton in a sorted list.
-                                 
-                GENERATE:           Loads a predefined automaton.
-                                
-                HELP:               Prints a help dialog, showing all available
-                                    commands and their use.
-                                    
-                QUIT:               Exits the program.
-                """);
+    private static void loadCommand(Command command) {
+        try {
+            replaceAutomaton(OffHeapAutomaton.load(command.getFile()));
+        } catch (NoSuchFileException e) {
+            printErr("No such file or directory: " + e.getMessage());
+        } catch (IOException e) {
+            printErr(e.getMessage());
+        }
     }
 
-    private static void quitCommand() {
-        running = false;
+    private static void replaceAutomaton(Automaton automaton) {
+        if (nfa instanceof OffHeapAutomaton loaded) {
+            loaded.close();
+        }
+        nfa = automaton;
     }
 
-    private static String extractWord(String userInput) {
-        if (nfa == null) {
-            printErr("NFA has not been initialized.");
-            return null;
+    private static void generateCommand() {
+        replaceAutomaton(new LambdaNFA(Command.GENERATED_SIZE, 1,
+                List.of(Command.GENERATED_SIZE)));
+        Command.generate(nfa::addTransition);
+    }
+
+    private static void statsCommand(Command command) {
+        if (command.getStatistics() != null) {
+            Statistics.setEnabled(command.getStatistics());
+            return;
         }
-        if (!userInput.matches(".*\".*\".*")) {
-            printErr("Word has to be wrapped in double quotes (\"w\") ");
-            return null;
+        if (!Statistics.isEnabled()) {
+            printErr("Statistics are disabled. Enable them with STATS ON.");
+            return;
         }
-        return userInput.substring(userInput.indexOf("\"") + 1,
-                userInput.lastIndexOf("\""));
+        out.print(Statistics.report());
+        Statistics.reset();
     }
 
     private static void printErr(String msg) {
-        System.out.println("Error! " + msg);
+        out.println("Error! " + msg);
     }
 
 }
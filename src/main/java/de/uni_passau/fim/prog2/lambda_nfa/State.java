@@ -1,47 +1,53 @@
 package de.uni_passau.fim.prog2.lambda_nfa;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
 /**
- * The class representing a single state inside an automaton. Transitions are
- * organized inside an adjacency list, and a nextSet may be precomputed and
- * saved for optimizing performance.
+ * The class representing a single state inside an automaton. Lambda
+ * transitions are kept in a plain list. Transitions over symbols may cover
+ * ranges of symbols and are indexed by sorted, disjoint symbol ranges, so
+ * the transitions for a symbol are found by binary search and the memory
+ * needed does not grow with the size of the alphabet. The lambda closure
+ * may be precomputed and saved as a bitset for optimizing performance.
+ * States on a common lambda cycle reach exactly the same states, so they
+ * share one closure object.
  */
 public class State {
     private final Integer number;
-    private final List<Collection<Transition>> charAdj;
-    private Collection<State> nextSet = new HashSet<>();
+    private final List<Transition> lambdaTransitions;
+    private final List<Transition> symbolTransitions;
+    private BitSet closure = null;
+    private volatile SymbolIndex symbolIndex = null;
 
     /**
      * Constructor creating dummy states by setting all fields to null.
      */
     public State() {
         this.number = null;
-        this.charAdj = null;
-        this.nextSet = null;
+        this.lambdaTransitions = null;
+        this.symbolTransitions = null;
     }
 
     /**
      * Default constructor for the State class. Immediately creates the
-     * adjacency list data structure.
+     * adjacency list data structures.
      *
      * @param number The number which the state is identified by.
      */
     public State(int number) {
         this.number = number;
-        int capacity = LambdaNFA.ALPHABET_LENGTH + 1;
-        this.charAdj = new ArrayList<>(capacity);
-        for (int i = 0; i <= LambdaNFA.ALPHABET_LENGTH; i++) {
-            this.charAdj.add(null);
-        }
+        this.lambdaTransitions = new ArrayList<>(0);
+        this.symbolTransitions = new ArrayList<>(2);
     }
 
     /**
@@ -49,7 +55,11 @@ public class State {
      *
      * @param symbol Symbol in the automaton's alphabet or lambda.
      * @return Index of the list inside the adjacency list.
+     * @deprecated States no longer keep one list per symbol, and the index
+     * is only meaningful for {@link Alphabet#DEFAULT}. Use
+     * {@link #getTransitions(char)} to look up the transitions of a symbol.
      */
+    @Deprecated
     public static int getSymbolIndex(char symbol) {
         if (symbol == LambdaNFA.LAMBDA_SYMBOL) {
             return 0;
@@ -59,29 +69,101 @@ public class State {
     }
 
     /**
-     * Calculates a set of states which can be reached from the current state
-     * only using lambda transitions. Immediately saves list inside state.
+     * Calculates the set of states which can be reached from the current
+     * state only using lambda transitions. Immediately saves it inside the
+     * state, as a closure of its own. To compute the closures of all states
+     * of an automaton at once, use {@link LambdaClosures#compute(State[])}.
      */
     public void precomputeNextSet() {
-        this.nextSet = new LinkedList<>();
-        Map<State, Boolean> visited = new HashMap<>();
-        Queue<State> bfsQueue = new LinkedList<>();
+        ClosureEvent event = Statistics.beginClosure();
+        BitSet visited = new BitSet();
+        Queue<State> bfsQueue = new ArrayDeque<>();
         bfsQueue.offer(this);
-        visited.put(this, true);
+        visited.set(this.number);
         while (!bfsQueue.isEmpty()) {
             State state = bfsQueue.poll();
-            if (state != this) {
-                this.nextSet.add(state);
-            }
-            Collection<State> lambdaTargets =
-                    state.getTargets(LambdaNFA.LAMBDA_SYMBOL);
-            for (State lambdaTarget : lambdaTargets) {
-                if (!visited.getOrDefault(lambdaTarget, false)) {
+            for (Transition t : state.lambdaTransitions) {
+                State lambdaTarget = t.getTarget();
+                if (!visited.get(lambdaTarget.number)) {
                     bfsQueue.offer(lambdaTarget);
-                    visited.put(lambdaTarget, true);
+                    visited.set(lambdaTarget.number);
                 }
             }
         }
+        this.closure = visited.cardinality() > 1 ? visited : null;
+        if (event != null) {
+            Statistics.endClosure(event, "state", visited.cardinality());
+        }
+    }
+
+    /**
+     * Adds states to the precomputed nextSet without recomputing it. Used to
+     * keep the set up to date when a lambda transition is inserted that
+     * makes {@code reached} reachable from this state. If the closure is
+     * shared with other states, they are extended as well.
+     *
+     * @param reached States which became reachable over lambda transitions.
+     */
+    public void extendNextSet(Collection<State> reached) {
+        BitSet numbers = new BitSet();
+        for (State state : reached) {
+            numbers.set(state.number);
+        }
+        extendClosure(numbers);
+    }
+
+    /**
+     * Adds states to the precomputed closure without recomputing it. If the
+     * closure is shared with other states, they are extended as well.
+     *
+     * @param reached The numbers of states which became reachable over
+     *                lambda transitions.
+     */
+    void extendClosure(BitSet reached) {
+        if (this.closure == null) {
+            this.closure = new BitSet();
+            this.closure.set(this.number);
+        }
+        this.closure.or(reached);
+    }
+
+    /**
+     * Getter for the precomputed lambda closure, i.e., the numbers of all
+     * states reachable from this state using only lambda transitions,
+     * including the state itself. The set may be shared with other states
+     * of the same lambda cycle and must not be modified.
+     *
+     * @return The closure, or {@code null} if it only contains this state.
+     */
+    BitSet getClosure() {
+        return this.closure;
+    }
+
+    /**
+     * Replaces the precomputed lambda closure.
+     *
+     * @param closure The numbers of all states reachable from this state
+     *                using only lambda transitions, including the state
+     *                itself, or {@code null} if no other state is
+     *                reachable.
+     */
+    void setClosure(BitSet closure) {
+        this.closure = closure;
+    }
+
+    /**
+     * Checks whether a state can be reached from this state using only
+     * lambda transitions, according to the precomputed closure.
+     *
+     * @param number The number of the state.
+     * @return {@code true} if and only if the state is this state or in its
+     * precomputed closure.
+     */
+    boolean closureContains(int number) {
+        if (this.closure == null) {
+            return number == this.number;
+        }
+        return this.closure.get(number);
     }
 
     /**
@@ -93,29 +175,82 @@ public class State {
      * a given symbol.
      */
     public Collection<State> getTargets(char symbol) {
-        Collection<Transition> transitions =
-                this.charAdj.get(State.getSymbolIndex(symbol));
         Collection<State> targets = new HashSet<>();
-        if (transitions == null || transitions.isEmpty()) {
-            return targets;
-        }
-        transitions.forEach(transition -> targets.add(transition.getTarget()));
+        getTransitions(symbol).forEach(
+                transition -> targets.add(transition.getTarget()));
         return targets;
     }
 
+    /**
+     * Getter for the transitions leaving this state over a given symbol,
+     * including transitions over ranges containing the symbol. Does not copy
+     * the adjacency list, so the result must not be modified.
+     *
+     * @param symbol The symbol identifying the transitions to be returned.
+     * @return All transitions over {@code symbol}, or an empty collection
+     * if there are none.
+     */
+    public Collection<Transition> getTransitions(char symbol) {
+        return getTransitionList(symbol);
+    }
+
+    /**
+     * Getter for the transitions leaving this state over a given symbol, as
+     * a random access list. Lets the simulation iterate by index, since the
+     * iterators of {@link #getTransitions(char)} are not always optimized
+     * away. Does not copy the adjacency list, so the result must not be
+     * modified.
+     *
+     * @param symbol The symbol identifying the transitions to be returned.
+     * @return All transitions over {@code symbol}, or an empty list if there
+     * are none.
+     */
+    List<Transition> getTransitionList(char symbol) {
+        if (symbol == LambdaNFA.LAMBDA_SYMBOL) {
+            return this.lambdaTransitions;
+        }
+        SymbolIndex index = this.symbolIndex;
+        if (index == null) {
+            index = new SymbolIndex(this.symbolTransitions);
+            this.symbolIndex = index;
+        }
+        return index.get(symbol);
+    }
+
+    /**
+     * Getter for all lambda transitions leaving this state, in the order
+     * they were inserted. Does not copy the adjacency list, so the result
+     * must not be modified.
+     *
+     * @return All lambda transitions of this state.
+     */
+    List<Transition> getLambdaTransitions() {
+        return this.lambdaTransitions;
+    }
+
+    /**
+     * Getter for all transitions over symbols leaving this state, in the
+     * order they were inserted. Does not copy the adjacency list, so the
+     * result must not be modified.
+     *
+     * @return All transitions of this state except lambda transitions.
+     */
+    public Collection<Transition> getSymbolTransitions() {
+        return this.symbolTransitions;
+    }
+
     /**
      * Inserts a transition object into the adjacency list.
      *
      * @param transition The transition object that should be inserted.
      */
     public void addTransition(Transition transition) {
-        int index = State.getSymbolIndex(transition.getSymbol());
-        Collection<Transition> transitions = this.charAdj.get(index);
-        if (transitions == null) {
-            transitions = new LinkedList<>();
-            this.charAdj.set(index, transitions);
+        if (transition.getSymbol() == LambdaNFA.LAMBDA_SYMBOL) {
+            this.lambdaTransitions.add(transition);
+        } else {
+            this.symbolTransitions.add(transition);
+            this.symbolIndex = null;
         }
-        transitions.add(transition);
     }
 
     /**
@@ -133,13 +268,45 @@ public class State {
     }
 
     /**
-     * Default getter for the nextSet field
+     * Calculates the set of states that can be reached from this state by
+     * only using lambda transitions, not including the state itself. Walks
+     * the lambda transitions, so the result is correct even if no closure
+     * was precomputed.
      *
-     * @return A set of states that can be reached from this state by only
-     * using lambda transitions.
+     * @return A new set of the reachable states.
      */
     public Collection<State> getNextSet() {
-        return this.nextSet;
+        Set<State> nextSet = new LinkedHashSet<>();
+        Queue<State> bfsQueue = new ArrayDeque<>();
+        bfsQueue.offer(this);
+        while (!bfsQueue.isEmpty()) {
+            for (Transition t : bfsQueue.poll().lambdaTransitions) {
+                if (nextSet.add(t.getTarget())) {
+                    bfsQueue.offer(t.getTarget());
+                }
+            }
+        }
+        nextSet.remove(this);
+        return nextSet;
+    }
+
+    /**
+     * Estimates the number of bytes this state occupies on the heap of a
+     * 64-bit virtual machine with compressed object pointers, including its
+     * adjacency list and outgoing transitions. The precomputed closure is
+     * not included, since it may be shared with other states.
+     *
+     * @return The estimated size in bytes.
+     */
+    public long estimateHeapSize() {
+        int transitions =
+                this.lambdaTransitions.size() + this.symbolTransitions.size();
+        long size = 24 + 16 + 2 * (24 + 16) + 28L * transitions;
+        SymbolIndex index = this.symbolIndex;
+        if (index != null) {
+            size += index.estimateHeapSize();
+        }
+        return size;
     }
 
     /**
@@ -152,12 +319,9 @@ public class State {
     }
 
     private List<Transition> getTransitions() {
-        List<Transition> transitions = new ArrayList<>();
-        for (Collection<Transition> collection : this.charAdj) {
-            if (collection != null) {
-                transitions.addAll(collection);
-            }
-        }
+        List<Transition> transitions =
+                new ArrayList<>(this.lambdaTransitions);
+        transitions.addAll(this.symbolTransitions);
         return transitions;
     }
 
@@ -166,4 +330,76 @@ public class State {
         Collections.sort(transitions);
         return transitions;
     }
+
+    /**
+     * Immutable index over the transitions of a state, splitting the
+     * symbols into sorted, disjoint ranges. All symbols of one range are
+     * covered by exactly the same transitions.
+     */
+    private static final class SymbolIndex {
+        private final int[] starts;
+        private final List<List<Transition>> ranges;
+
+        private SymbolIndex(List<Transition> transitions) {
+            int[] bounds = new int[2 * transitions.size()];
+            int count = 0;
+            for (Transition t : transitions) {
+                bounds[count++] = t.getSymbol();
+                bounds[count++] = t.getLastSymbol() + 1;
+            }
+            Arrays.sort(bounds);
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                if (size == 0 || bounds[size - 1] != bounds[i]) {
+                    bounds[size++] = bounds[i];
+                }
+            }
+            this.starts = Arrays.copyOf(bounds, size);
+            List<List<Transition>> ranges = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                ranges.add(new ArrayList<>(1));
+            }
+            for (Transition t : transitions) {
+                for (int i = find(t.getSymbol());
+                     i < size && this.starts[i] <= t.getLastSymbol(); i++) {
+                    ranges.get(i).add(t);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                ranges.set(i, List.copyOf(ranges.get(i)));
+            }
+            this.ranges = ranges;
+        }
+
+        private List<Transition> get(char symbol) {
+            int i = find(symbol);
+            if (i < 0) {
+                return Collections.emptyList();
+            }
+            return this.ranges.get(i);
+        }
+
+        private int find(char symbol) {
+            int low = 0;
+            int high = this.starts.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (this.starts[middle] <= symbol) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return high;
+        }
+
+        private long estimateHeapSize() {
+            long size = 16 + 16 + 4L * this.starts.length + 24 + 16
+                    + 4L * this.ranges.size();
+            for (List<Transition> range : this.ranges) {
+                size += 16 + 4L * range.size();
+            }
+            return size;
+        }
+    }
 }
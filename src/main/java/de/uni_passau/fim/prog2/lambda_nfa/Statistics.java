@@ -0,0 +1,239 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global registry of counters about the work done by all lambda automata,
+ * and source of the flight recorder events {@link QueryEvent} and
+ * {@link ClosureEvent}. Collection is disabled by default; then every
+ * instrumented method only reads a single static flag. The counters may be
+ * updated from several threads at once. Steps are counted whenever the
+ * simulation computes successors, i.e., for misses of the {@link DfaCache},
+ * batch queries and matchers, but not for transitions found in the cache.
+ * The averages of the report thus describe the computed steps only; the
+ * lookups of the cache are reported as hits and misses next to them.
+ */
+public final class Statistics {
+    private static final int BUCKET_COUNT = 64;
+
+    /**
+     * Whether counters are updated and events emitted. Volatile, so a change
+     * is seen by all threads at their next query; reading it on the hot path
+     * costs no more than a plain load on common platforms.
+     */
+    static volatile boolean enabled = false;
+
+    private static final LongAdder queries = new LongAdder();
+    private static final LongAdder steps = new LongAdder();
+    private static final LongAdder cacheHits = new LongAdder();
+    private static final LongAdder cacheMisses = new LongAdder();
+    private static final LongAdder activeStates = new LongAdder();
+    private static final LongAccumulator peakActiveStates =
+            new LongAccumulator(Math::max, 0);
+    private static final LongAdder expandedStates = new LongAdder();
+    private static final LongAdder transitions = new LongAdder();
+    private static final LongAdder closures = new LongAdder();
+    private static final LongAdder closureNanos = new LongAdder();
+    private static final AtomicLongArray latencies =
+            new AtomicLongArray(BUCKET_COUNT);
+
+    private Statistics() throws InstantiationException {
+        throw new InstantiationException(
+                "Statistics may not be instantiated.");
+    }
+
+    /**
+     * Turns collection on or off. Does not reset the counters.
+     *
+     * @param enabled {@code true} if counters should be updated and events
+     *                emitted from now on.
+     */
+    public static void setEnabled(boolean enabled) {
+        Statistics.enabled = enabled;
+    }
+
+    /**
+     * Default getter for the enabled field.
+     *
+     * @return {@code true} if and only if collection is turned on.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Resets all counters and the latency histogram to zero.
+     */
+    public static void reset() {
+        queries.reset();
+        steps.reset();
+        cacheHits.reset();
+        cacheMisses.reset();
+        activeStates.reset();
+        peakActiveStates.reset();
+        expandedStates.reset();
+        transitions.reset();
+        closures.reset();
+        closureNanos.reset();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            latencies.set(i, 0);
+        }
+    }
+
+    /**
+     * Generates a report of all counters. The latency histogram lists the
+     * number of queries per power of two of nanoseconds, omitting empty
+     * buckets.
+     *
+     * @return A multi-line report.
+     */
+    public static String report() {
+        long stepCount = steps.sum();
+        long closureCount = closures.sum();
+        String separator = System.lineSeparator();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Queries:              ").append(queries.sum())
+                .append(separator);
+        sb.append("Steps:                ").append(stepCount)
+                .append(separator);
+        sb.append("Cache hits:           ").append(cacheHits.sum())
+                .append(separator);
+        sb.append("Cache misses:         ").append(cacheMisses.sum())
+                .append(separator);
+        double average = stepCount == 0 ? 0
+                : (double) activeStates.sum() / stepCount;
+        sb.append("Active states (avg):  ")
+                .append(String.format("%.2f", average)).append(separator);
+        sb.append("Active states (peak): ").append(peakActiveStates.get())
+                .append(separator);
+        sb.append("States expanded:      ").append(expandedStates.sum())
+                .append(separator);
+        sb.append("Transitions added:    ").append(transitions.sum())
+                .append(separator);
+        sb.append("Closure updates:      ").append(closureCount)
+                .append(" (").append(closureNanos.sum() / 1000)
+                .append(" us)").append(separator);
+        sb.append("Query latency:").append(separator);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = latencies.get(i);
+            if (count > 0) {
+                sb.append(String.format("  < %12d ns: %d", 1L << (i + 1),
+                        count)).append(separator);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Starts measuring a query.
+     *
+     * @return The event to be passed to
+     * {@link #endQuery(QueryEvent, String, int, int)}, or {@code null} if
+     * collection is turned off.
+     */
+    static QueryEvent beginQuery() {
+        if (!enabled) {
+            return null;
+        }
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    /**
+     * Finishes measuring a query and emits its event.
+     *
+     * @param event        The event returned by {@link #beginQuery()}.
+     * @param operation    The name of the query method.
+     * @param wordLength   The length of the queried word.
+     * @param resultLength The length of the accepted prefix, or {@code -1}
+     *                     if there is none.
+     */
+    static void endQuery(QueryEvent event, String operation, int wordLength,
+                         int resultLength) {
+        long nanos = System.nanoTime() - event.startNanos;
+        queries.increment();
+        latencies.incrementAndGet(
+                BUCKET_COUNT - 1 - Long.numberOfLeadingZeros(nanos | 1));
+        event.operation = operation;
+        event.wordLength = wordLength;
+        event.resultLength = resultLength;
+        event.commit();
+    }
+
+    /**
+     * Starts measuring a computation or update of lambda closures.
+     *
+     * @return The event to be passed to
+     * {@link #endClosure(ClosureEvent, String, int)}, or {@code null} if
+     * collection is turned off.
+     */
+    static ClosureEvent beginClosure() {
+        if (!enabled) {
+            return null;
+        }
+        ClosureEvent event = new ClosureEvent();
+        event.begin();
+        event.startNanos = System.nanoTime();
+        return event;
+    }
+
+    /**
+     * Finishes measuring a computation or update of lambda closures and
+     * emits its event.
+     *
+     * @param event      The event returned by {@link #beginClosure()}.
+     * @param kind       {@code all} for all states at once, {@code state}
+     *                   for a single state or {@code update} for an
+     *                   incremental update.
+     * @param stateCount The number of states of the automaton, or the
+     *                   size of the closure for a single state.
+     */
+    static void endClosure(ClosureEvent event, String kind, int stateCount) {
+        closures.increment();
+        closureNanos.add(System.nanoTime() - event.startNanos);
+        event.kind = kind;
+        event.stateCount = stateCount;
+        event.commit();
+    }
+
+    /**
+     * Records a single simulation step. Must only be called while
+     * collection is turned on.
+     *
+     * @param expanded The number of states whose transitions were read.
+     * @param active   The number of states active after the step.
+     */
+    static void recordStep(int expanded, int active) {
+        steps.increment();
+        expandedStates.add(expanded);
+        activeStates.add(active);
+        peakActiveStates.accumulate(active);
+    }
+
+    /**
+     * Records a lookup of a transition in a {@link DfaCache}. Must only be
+     * called while collection is turned on.
+     *
+     * @param hit {@code true} if the transition was found in the cache,
+     *            {@code false} if it had to be computed.
+     */
+    static void recordCacheLookup(boolean hit) {
+        if (hit) {
+            cacheHits.increment();
+        } else {
+            cacheMisses.increment();
+        }
+    }
+
+    /**
+     * Records an added transition. Must only be called while collection is
+     * turned on.
+     */
+    static void recordTransition() {
+        transitions.increment();
+    }
+}
@@ -0,0 +1,249 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Equivalence classes of symbols with respect to the transitions of an
+ * automaton. Two symbols are equivalent if every transition either accepts
+ * both or none of them, so deterministic automata only need one table
+ * column per class instead of one per symbol. Class {@code 0} contains all
+ * symbols without any transition.
+ */
+final class SymbolClasses {
+    private static final int DIRECT_LIMIT = 128;
+    private static final int END = Character.MAX_VALUE + 1;
+
+    private final int[] starts;
+    private final int[] classes;
+    private final char[] representatives;
+    private final int[] direct = new int[DIRECT_LIMIT];
+
+    private SymbolClasses(int[] starts, int[] classes,
+                          char[] representatives) {
+        this.starts = starts;
+        this.classes = classes;
+        this.representatives = representatives;
+        for (int symbol = 0; symbol < DIRECT_LIMIT; symbol++) {
+            this.direct[symbol] = this.classes[find((char) symbol)];
+        }
+    }
+
+    /**
+     * Computes the symbol classes of an automaton.
+     *
+     * @param states The states of the automaton, indexed by number.
+     * @return The symbol classes.
+     */
+    static SymbolClasses of(State[] states) {
+        List<Transition> transitions = new ArrayList<>();
+        for (int i = 1; i < states.length; i++) {
+            transitions.addAll(states[i].getSymbolTransitions());
+        }
+        int[] bounds = new int[2 * transitions.size() + 1];
+        int count = 0;
+        bounds[count++] = 0;
+        for (Transition t : transitions) {
+            bounds[count++] = t.getSymbol();
+            bounds[count++] = t.getLastSymbol() + 1;
+        }
+        Arrays.sort(bounds);
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if ((size == 0 || bounds[size - 1] != bounds[i])
+                    && bounds[i] < END) {
+                bounds[size++] = bounds[i];
+            }
+        }
+        int[] starts = Arrays.copyOf(bounds, size);
+
+        List<List<Integer>> covering = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            covering.add(new ArrayList<>(1));
+        }
+        for (int id = 0; id < transitions.size(); id++) {
+            Transition t = transitions.get(id);
+            int i = Arrays.binarySearch(starts, t.getSymbol());
+            for (; i < size && starts[i] <= t.getLastSymbol(); i++) {
+                covering.get(i).add(id);
+            }
+        }
+
+        Map<List<Integer>, Integer> numbers = new HashMap<>();
+        numbers.put(List.of(), 0);
+        int[] classes = new int[size];
+        List<Character> representatives = new ArrayList<>();
+        representatives.add(Character.MIN_VALUE);
+        for (int i = 0; i < size; i++) {
+            Integer number = numbers.get(covering.get(i));
+            if (number == null) {
+                number = representatives.size();
+                numbers.put(covering.get(i), number);
+                representatives.add((char) starts[i]);
+            }
+            classes[i] = number;
+        }
+        char[] symbols = new char[representatives.size()];
+        for (int i = 0; i < symbols.length; i++) {
+            symbols[i] = representatives.get(i);
+        }
+        return new SymbolClasses(starts, classes, symbols);
+    }
+
+    /**
+     * Computes the symbol classes after a transition over a range of
+     * symbols was added, without looking at the other transitions again.
+     * The ranges are split at the bounds of the new range, and every class
+     * with symbols inside it gets a new class for these symbols, unless all
+     * its symbols are inside. Needs O(r + c) time for r ranges and c
+     * classes.
+     *
+     * @param first The first symbol of the new transition.
+     * @param last  The last symbol of the new transition, inclusive.
+     * @return The refined symbol classes.
+     */
+    SymbolClasses with(char first, char last) {
+        int size = this.starts.length;
+        int[] starts = new int[size + 2];
+        int[] classes = new int[size + 2];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int end = i + 1 < size ? this.starts[i + 1] : END;
+            starts[count] = this.starts[i];
+            classes[count++] = this.classes[i];
+            if (this.starts[i] < first && first < end) {
+                starts[count] = first;
+                classes[count++] = this.classes[i];
+            }
+            if (this.starts[i] < last + 1 && last + 1 < end) {
+                starts[count] = last + 1;
+                classes[count++] = this.classes[i];
+            }
+        }
+
+        int classCount = this.representatives.length;
+        boolean[] outside = new boolean[classCount];
+        for (int i = 0; i < count; i++) {
+            if (starts[i] < first || starts[i] > last) {
+                outside[classes[i]] = true;
+            }
+        }
+        int[] renamed = new int[classCount];
+        Arrays.fill(renamed, -1);
+        int next = classCount;
+        for (int i = 0; i < count; i++) {
+            int c = classes[i];
+            if (starts[i] >= first && starts[i] <= last) {
+                if (renamed[c] < 0) {
+                    renamed[c] = c == 0 || outside[c] ? next++ : c;
+                }
+                classes[i] = renamed[c];
+            }
+        }
+        char[] representatives = Arrays.copyOf(this.representatives, next);
+        boolean[] seen = new boolean[next];
+        seen[0] = true;
+        for (int i = 0; i < count; i++) {
+            if (!seen[classes[i]]) {
+                seen[classes[i]] = true;
+                representatives[classes[i]] = (char) starts[i];
+            }
+        }
+        return new SymbolClasses(Arrays.copyOf(starts, count),
+                Arrays.copyOf(classes, count), representatives);
+    }
+
+    /**
+     * Computes the class of a symbol.
+     *
+     * @param symbol The symbol.
+     * @return The class of {@code symbol}, or {@code 0} if no transition
+     * accepts it.
+     */
+    int classOf(char symbol) {
+        if (symbol < DIRECT_LIMIT) {
+            return this.direct[symbol];
+        }
+        return this.classes[find(symbol)];
+    }
+
+    /**
+     * Getter for the number of classes, including class {@code 0}.
+     *
+     * @return The number of classes.
+     */
+    int count() {
+        return this.representatives.length;
+    }
+
+    /**
+     * Getter for a symbol of a class, which can be used to follow the
+     * transitions of the class.
+     *
+     * @param symbolClass The class, which may not be {@code 0}.
+     * @return Some symbol of the class.
+     */
+    char representative(int symbolClass) {
+        return this.representatives[symbolClass];
+    }
+
+    /**
+     * Getter for the number of maximal ranges in which all symbols belong to
+     * the same class.
+     *
+     * @return The number of ranges.
+     */
+    int rangeCount() {
+        return this.starts.length;
+    }
+
+    /**
+     * Getter for the first symbol of a range.
+     *
+     * @param range The index of the range.
+     * @return The first symbol of the range.
+     */
+    char rangeStart(int range) {
+        return (char) this.starts[range];
+    }
+
+    /**
+     * Getter for the last symbol of a range.
+     *
+     * @param range The index of the range.
+     * @return The last symbol of the range, inclusive.
+     */
+    char rangeEnd(int range) {
+        if (range + 1 == this.starts.length) {
+            return Character.MAX_VALUE;
+        }
+        return (char) (this.starts[range + 1] - 1);
+    }
+
+    /**
+     * Getter for the class of the symbols of a range.
+     *
+     * @param range The index of the range.
+     * @return The class of all symbols in the range.
+     */
+    int rangeClass(int range) {
+        return this.classes[range];
+    }
+
+    private int find(char symbol) {
+        int low = 0;
+        int high = this.starts.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (this.starts[middle] <= symbol) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+}
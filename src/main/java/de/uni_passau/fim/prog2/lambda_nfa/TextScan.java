@@ -0,0 +1,237 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Searches a text for spans accepted by a lambda automaton in a single
+ * left-to-right pass. The starting states are injected at every index, and
+ * every active state is tagged with the earliest index it was reached from.
+ * The active states are kept ordered by their tags: reading a symbol visits
+ * them in this order and keeps the first tag reaching a state, and newly
+ * injected states always have the largest tag. The first active final state
+ * thus carries the leftmost start of a match ending at the current index.
+ * States from which no final state can be reached are never added. Empty
+ * matches are not reported.
+ */
+final class TextScan {
+    private final Graph graph;
+    private final BitSet startingStates;
+    private final BitSet endStates;
+    private final BitSet liveStates;
+    private final BitSet present;
+    private int[] activeStates;
+    private int[] activeStarts;
+    private int activeCount = 0;
+    private int[] nextStates;
+    private int[] nextStarts;
+    private int nextCount = 0;
+    private int start = 0;
+    private final IntConsumer addTarget = target -> add(target, this.start);
+
+    /**
+     * General purpose constructor for the scan. The lambda closures of the
+     * states have to be up to date.
+     *
+     * @param states         The states of the automaton, indexed by number.
+     * @param startingStates The numbers of all states where matches start.
+     * @param endStates      The numbers of all final states.
+     * @param liveStates     The numbers of all states from which a final
+     *                       state can be reached.
+     */
+    TextScan(State[] states, BitSet startingStates, BitSet endStates,
+             BitSet liveStates) {
+        this(new Graph() {
+            @Override
+            public void forEachTarget(int state, char symbol,
+                                      IntConsumer action) {
+                for (Transition t : states[state].getTransitions(symbol)) {
+                    action.accept(t.getTarget().getNumber());
+                }
+            }
+
+            @Override
+            public BitSet closure(int state) {
+                return states[state].getClosure();
+            }
+        }, states.length, startingStates, endStates, liveStates);
+    }
+
+    /**
+     * Constructor for a scan over transitions which are not stored in
+     * {@link State}s.
+     *
+     * @param graph          The transitions and lambda closures.
+     * @param capacity       The largest state number plus one.
+     * @param startingStates The numbers of all states where matches start.
+     * @param endStates      The numbers of all final states.
+     * @param liveStates     The numbers of all states from which a final
+     *                       state can be reached.
+     */
+    TextScan(Graph graph, int capacity, BitSet startingStates,
+             BitSet endStates, BitSet liveStates) {
+        this.graph = graph;
+        this.startingStates = startingStates;
+        this.endStates = endStates;
+        this.liveStates = liveStates;
+        this.present = new BitSet(capacity);
+        this.activeStates = new int[capacity];
+        this.activeStarts = new int[capacity];
+        this.nextStates = new int[capacity];
+        this.nextStarts = new int[capacity];
+    }
+
+    /**
+     * Finds the matches inside {@code text}. In
+     * {@link Match.Mode#NON_OVERLAPPING} mode, a match is only known to be
+     * leftmost-longest once no state tagged with its start or an earlier
+     * index is active anymore. Indices after its end which were read in the
+     * meantime are read again, so the search for the next match starts
+     * directly after the previous one. In the worst case, every match is
+     * only final at the end of the text, which makes the search quadratic
+     * in the length of the text.
+     *
+     * @param text The text to search.
+     * @param mode The matches to report.
+     * @return The matches, ordered by their end.
+     */
+    List<Match> run(CharSequence text, Match.Mode mode) {
+        boolean all = mode == Match.Mode.ALL;
+        List<Match> matches = new ArrayList<>();
+        int bestStart = -1;
+        int bestEnd = -1;
+        int i = 0;
+        while (true) {
+            if (bestStart < 0) {
+                inject(i);
+            }
+            int start = acceptingStart();
+            if (start >= 0 && start < i) {
+                if (all) {
+                    matches.add(new Match(start, i));
+                } else if (bestStart < 0 || start <= bestStart) {
+                    bestStart = start;
+                    bestEnd = i;
+                    dropStartsAfter(start);
+                }
+            }
+            if (bestStart >= 0 && (this.activeCount == 0
+                    || i == text.length())) {
+                matches.add(new Match(bestStart, bestEnd));
+                clear();
+                i = bestEnd;
+                bestStart = -1;
+                continue;
+            }
+            if (i == text.length()) {
+                return matches;
+            }
+            step(text.charAt(i));
+            ++i;
+        }
+    }
+
+    private void inject(int index) {
+        int count = this.activeCount;
+        swapLists();
+        this.nextCount = count;
+        for (int s = this.startingStates.nextSetBit(0); s >= 0;
+             s = this.startingStates.nextSetBit(s + 1)) {
+            add(s, index);
+        }
+        swapLists();
+    }
+
+    private void step(char symbol) {
+        this.present.clear();
+        this.nextCount = 0;
+        if (symbol != LambdaNFA.LAMBDA_SYMBOL) {
+            for (int k = 0; k < this.activeCount; k++) {
+                this.start = this.activeStarts[k];
+                this.graph.forEachTarget(this.activeStates[k], symbol,
+                        this.addTarget);
+            }
+        }
+        swapLists();
+    }
+
+    private void add(int state, int start) {
+        BitSet closure = this.graph.closure(state);
+        if (closure == null) {
+            append(state, start);
+            return;
+        }
+        for (int s = closure.nextSetBit(0); s >= 0;
+             s = closure.nextSetBit(s + 1)) {
+            append(s, start);
+        }
+    }
+
+    private void append(int state, int start) {
+        if (!this.present.get(state) && this.liveStates.get(state)) {
+            this.present.set(state);
+            this.nextStates[this.nextCount] = state;
+            this.nextStarts[this.nextCount] = start;
+            ++this.nextCount;
+        }
+    }
+
+    private void swapLists() {
+        int[] swap = this.activeStates;
+        this.activeStates = this.nextStates;
+        this.nextStates = swap;
+        swap = this.activeStarts;
+        this.activeStarts = this.nextStarts;
+        this.nextStarts = swap;
+        this.activeCount = this.nextCount;
+    }
+
+    private int acceptingStart() {
+        for (int k = 0; k < this.activeCount; k++) {
+            if (this.endStates.get(this.activeStates[k])) {
+                return this.activeStarts[k];
+            }
+        }
+        return -1;
+    }
+
+    private void dropStartsAfter(int start) {
+        int count = this.activeCount;
+        while (count > 0 && this.activeStarts[count - 1] > start) {
+            this.present.clear(this.activeStates[--count]);
+        }
+        this.activeCount = count;
+    }
+
+    private void clear() {
+        this.present.clear();
+        this.activeCount = 0;
+    }
+
+    /**
+     * The transitions and lambda closures a scan follows.
+     */
+    interface Graph {
+        /**
+         * Passes the target of every transition over a symbol leaving a
+         * state to {@code action}.
+         *
+         * @param state  The number of the source state.
+         * @param symbol The symbol to read, which is not lambda.
+         * @param action Receives the numbers of the target states.
+         */
+        void forEachTarget(int state, char symbol, IntConsumer action);
+
+        /**
+         * Getter for the lambda closure of a state.
+         *
+         * @param state The number of the state.
+         * @return The numbers of all states reachable using only lambda
+         * transitions, including the state itself, or {@code null} if it
+         * only contains the state. Must not be modified.
+         */
+        BitSet closure(int state);
+    }
+}
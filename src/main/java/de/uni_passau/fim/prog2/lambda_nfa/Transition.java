@@ -7,6 +7,7 @@ public class Transition implements Comparable<Transition> {
     private final State source;
     private final State target;
     private final char symbol;
+    private final char lastSymbol;
 
     /**
      * General purpose constructor for the transition class, setting all fields.
@@ -19,9 +20,24 @@ public class Transition implements Comparable<Transition> {
      */
     public Transition(State source, State target,
                       char symbol) {
+        this(source, target, symbol, symbol);
+    }
+
+    /**
+     * Constructor for a transition which can be used with any symbol of a
+     * continuous range.
+     *
+     * @param source     The state from which the transition should start.
+     * @param target     The state to which the transition should go.
+     * @param symbol     The first symbol of the range.
+     * @param lastSymbol The last symbol of the range, inclusive.
+     */
+    public Transition(State source, State target, char symbol,
+                      char lastSymbol) {
         this.source = source;
         this.target = target;
         this.symbol = symbol;
+        this.lastSymbol = lastSymbol;
     }
 
     /**
@@ -63,9 +79,12 @@ public class Transition implements Comparable<Transition> {
         } else if (this.target.getNumber() > o.target.getNumber()) {
             return 1;
         } else {
-            int self = State.getSymbolIndex(this.symbol);
-            int other = State.getSymbolIndex(o.symbol);
-            return Integer.signum(self - other);
+            int self = sortKey(this.symbol);
+            int other = sortKey(o.symbol);
+            if (self != other) {
+                return Integer.signum(self - other);
+            }
+            return Integer.signum(this.lastSymbol - o.lastSymbol);
         }
     }
 
@@ -82,12 +101,34 @@ public class Transition implements Comparable<Transition> {
      * Default getter for the symbol field.
      *
      * @return The character used to take the transition or the symbol that
-     * identifies lambda.
+     * identifies lambda. For transitions over a range, the first character
+     * of the range.
      */
     public char getSymbol() {
         return this.symbol;
     }
 
+    /**
+     * Default getter for the lastSymbol field.
+     *
+     * @return The last character of the range of this transition, equal to
+     * {@link Transition#getSymbol()} for transitions over a single symbol.
+     */
+    public char getLastSymbol() {
+        return this.lastSymbol;
+    }
+
+    /**
+     * Checks whether the transition can be used with a given symbol.
+     *
+     * @param symbol The symbol to be read.
+     * @return {@code true} if and only if {@code symbol} lies inside the
+     * range of this transition.
+     */
+    public boolean accepts(char symbol) {
+        return symbol >= this.symbol && symbol <= this.lastSymbol;
+    }
+
     /**
      * Generates string representation of the transition.
      *
@@ -96,7 +137,14 @@ public class Transition implements Comparable<Transition> {
      */
     @Override
     public String toString() {
+        String label = this.symbol == this.lastSymbol
+                ? String.valueOf(this.symbol)
+                : "[" + this.symbol + "-" + this.lastSymbol + "]";
         return "(" + this.source.getNumber() + ", " + this.target.getNumber()
-                + ") " + symbol + System.lineSeparator();
+                + ") " + label + System.lineSeparator();
+    }
+
+    private static int sortKey(char symbol) {
+        return symbol == LambdaNFA.LAMBDA_SYMBOL ? -1 : symbol;
     }
 }
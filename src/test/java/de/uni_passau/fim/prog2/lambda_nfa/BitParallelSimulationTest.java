@@ -0,0 +1,114 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Compares {@link BitParallelSimulation} with the set-based steps of
+ * {@link FrontierSimulation}, run by a {@link Matcher}, on random automata.
+ * The sizes cover the boundaries of the two {@code long}s holding the
+ * active states, the automata contain lambda cycles, and the words contain
+ * {@link LambdaNFA#LAMBDA_SYMBOL} and symbols without any transition.
+ */
+class BitParallelSimulationTest {
+    private static final int[] SIZES = {1, 2, 7, 63, 64, 65, 127, 128};
+    private static final int AUTOMATA = 10;
+    private static final int WORDS = 100;
+    private static final String SYMBOLS = "abcd" + LambdaNFA.LAMBDA_SYMBOL;
+
+    @Test
+    void agreesWithFrontierSimulation() {
+        Random random = new Random(20);
+        for (int n : SIZES) {
+            for (int k = 0; k < AUTOMATA; k++) {
+                LambdaNFA nfa = automaton(n, random);
+                BitParallelSimulation small = nfa.getSimulation().bitParallel();
+                assertNotNull(small, n + " states");
+                Matcher matcher = nfa.matcher();
+                for (String word : words(n, random)) {
+                    String message = n + " states, word " + word;
+                    assertEquals(matcher.longestPrefixLength(word),
+                            small.longestPrefixLength(word), message);
+                    assertEquals(matcher.matches(word), small.accepts(word),
+                            message);
+                }
+            }
+        }
+    }
+
+    @Test
+    void largerAutomataHaveNoEngine() {
+        int n = BitParallelSimulation.MAX_STATES + 1;
+        assertNull(automaton(n, new Random(n)).getSimulation().bitParallel());
+    }
+
+    /**
+     * Builds an automaton with a chain over {@code a} through all states, so
+     * every bit of the masks is used, random transitions over {@code a} to
+     * {@code c}, partly as ranges, and a lambda cycle through random states.
+     * Symbol {@code d} has no transition.
+     */
+    private static LambdaNFA automaton(int n, Random random) {
+        List<Integer> finals = new ArrayList<>(List.of(n));
+        for (int i = 0; i < n / 8; i++) {
+            finals.add(1 + random.nextInt(n));
+        }
+        LambdaNFA nfa = new LambdaNFA(n, 1, finals);
+        for (int s = 1; s < n; s++) {
+            nfa.addTransition(s, s + 1, 'a');
+        }
+        for (int i = 0; i < 2 * n; i++) {
+            int source = 1 + random.nextInt(n);
+            int target = 1 + random.nextInt(n);
+            switch (random.nextInt(4)) {
+                case 0:
+                    nfa.addTransition(source, target, LambdaNFA.LAMBDA_SYMBOL);
+                    break;
+                case 1:
+                    nfa.addTransition(source, target, 'b', 'c');
+                    break;
+                default:
+                    nfa.addTransition(source, target,
+                            (char) ('a' + random.nextInt(3)));
+            }
+        }
+        int first = 1 + random.nextInt(n);
+        int previous = first;
+        for (int i = 0; i < 3; i++) {
+            int next = 1 + random.nextInt(n);
+            nfa.addTransition(previous, next, LambdaNFA.LAMBDA_SYMBOL);
+            previous = next;
+        }
+        nfa.addTransition(previous, first, LambdaNFA.LAMBDA_SYMBOL);
+        return nfa;
+    }
+
+    /**
+     * Generates short random words, words running along the chain up to and
+     * past the last state, and such words ending in a symbol without a
+     * transition.
+     */
+    private static List<String> words(int n, Random random) {
+        List<String> words = new ArrayList<>(List.of("",
+                "a".repeat(n - 1), "a".repeat(n), "a".repeat(n - 1) + "d",
+                "a".repeat(n - 1) + LambdaNFA.LAMBDA_SYMBOL));
+        for (int i = 0; i < WORDS; i++) {
+            int length = random.nextInt(i % 2 == 0 ? 12 : n + 2);
+            StringBuilder word = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                word.append(i % 2 == 0
+                        ? SYMBOLS.charAt(random.nextInt(SYMBOLS.length()))
+                        : random.nextInt(8) == 0 ? 'b' : 'a');
+            }
+            words.add(word.toString());
+        }
+        return words;
+    }
+}
@@ -0,0 +1,162 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stresses {@link ConcurrentLambdaNFA} with a writer publishing batches
+ * while readers query snapshots. Batch {@code k} adds two disjoint paths
+ * from the starting to the final state, one reading {@code "a" + bits(k)}
+ * and one reading {@code "b" + bits(k)}, made of alternating symbol and
+ * lambda transitions whose edges are interleaved within the batch. Any
+ * torn batch therefore accepts neither word or only one of them, and the
+ * longest prefix of either word depends on the last edge of its path.
+ */
+class ConcurrentLambdaNFATest {
+    private static final int BATCHES = 256;
+    private static final int BITS = 8;
+    private static final int READERS = 4;
+
+    /**
+     * The number of states of one path: a state before and after each
+     * symbol, joined by lambda transitions.
+     */
+    private static final int PATH_STATES = 2 * (BITS + 1);
+
+    private static final int START = 1;
+    private static final int FINAL = 2;
+
+    @Test
+    void batchesAreVisibleAtomically() throws Exception {
+        ConcurrentLambdaNFA nfa = new ConcurrentLambdaNFA(
+                2 + 2 * BATCHES * PATH_STATES, START, List.of(FINAL));
+        AtomicBoolean done = new AtomicBoolean(false);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS + 1);
+        try {
+            List<Future<Integer>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; r++) {
+                long seed = r;
+                readers.add(executor.submit(() -> read(nfa, done, seed)));
+            }
+            Future<?> writer = executor.submit(() -> {
+                try {
+                    for (int k = 0; k < BATCHES; k++) {
+                        publish(nfa, k);
+                    }
+                } finally {
+                    done.set(true);
+                }
+            });
+            writer.get(1, TimeUnit.MINUTES);
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get(1, TimeUnit.MINUTES) > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ConcurrentLambdaNFA.Snapshot last = nfa.snapshot();
+        assertEquals(BATCHES, last.getVersion());
+        for (int k = 0; k < BATCHES; k++) {
+            check(last, k);
+        }
+    }
+
+    @Test
+    void invalidRangeIsReportedWithBothBounds() {
+        ConcurrentLambdaNFA nfa = new ConcurrentLambdaNFA(2, 1, List.of(2));
+        IllegalArgumentException e = assertThrows(
+                IllegalArgumentException.class,
+                () -> nfa.batch().addTransition(1, 3, 'a', 'c').publish());
+        assertEquals("Transition (1, 3) [a-c] is not valid.", e.getMessage());
+        assertEquals(0, nfa.snapshot().getVersion());
+    }
+
+    private static int read(ConcurrentLambdaNFA nfa, AtomicBoolean done,
+                            long seed) {
+        Random random = new Random(seed);
+        int queries = 0;
+        long lastVersion = 0;
+        while (!done.get() || queries == 0) {
+            ConcurrentLambdaNFA.Snapshot snapshot = nfa.snapshot();
+            assertTrue(snapshot.getVersion() >= lastVersion);
+            lastVersion = snapshot.getVersion();
+            check(snapshot, random.nextInt(BATCHES));
+            if (lastVersion > 0) {
+                check(snapshot, (int) lastVersion - 1);
+            }
+            ++queries;
+        }
+        return queries;
+    }
+
+    /**
+     * Checks that batch {@code k} is either entirely visible in
+     * {@code snapshot} or not at all. Batches are published in order, so it
+     * is visible if and only if more than {@code k} batches are.
+     */
+    private static void check(ConcurrentLambdaNFA.Snapshot snapshot, int k) {
+        boolean visible = k < snapshot.getVersion();
+        for (char head : new char[]{'a', 'b'}) {
+            String word = word(head, k);
+            assertEquals(visible, snapshot.isElement(word),
+                    "Version " + snapshot.getVersion() + ", word " + word);
+            if (visible) {
+                assertEquals(word, snapshot.longestPrefix(word + "ab"));
+            } else {
+                assertNull(snapshot.longestPrefix(word + "ab"));
+            }
+        }
+    }
+
+    private static void publish(ConcurrentLambdaNFA nfa, int k) {
+        String first = word('a', k);
+        String second = word('b', k);
+        int firstOffset = 2 + 2 * k * PATH_STATES;
+        int secondOffset = firstOffset + PATH_STATES;
+        ConcurrentLambdaNFA.Batch batch = nfa.batch();
+        for (int i = 0; i <= first.length(); i++) {
+            addEdge(batch, first, firstOffset, i);
+            addEdge(batch, second, secondOffset, i);
+        }
+        batch.publish();
+    }
+
+    /**
+     * Adds the transitions of path step {@code i}: a lambda transition into
+     * the state before symbol {@code i}, or into the final state for the
+     * last step, followed by the transition reading symbol {@code i}.
+     */
+    private static void addEdge(ConcurrentLambdaNFA.Batch batch,
+                                String word, int offset, int i) {
+        int before = offset + 2 * i + 1;
+        int source = i == 0 ? START : before - 1;
+        if (i == word.length()) {
+            batch.addTransition(source, FINAL, LambdaNFA.LAMBDA_SYMBOL);
+            return;
+        }
+        batch.addTransition(source, before, LambdaNFA.LAMBDA_SYMBOL);
+        batch.addTransition(before, before + 1, word.charAt(i));
+    }
+
+    private static String word(char head, int k) {
+        StringBuilder sb = new StringBuilder().append(head);
+        for (int bit = BITS - 1; bit >= 0; bit--) {
+            sb.append((k >>> bit & 1) == 0 ? 'a' : 'b');
+        }
+        return sb.toString();
+    }
+}
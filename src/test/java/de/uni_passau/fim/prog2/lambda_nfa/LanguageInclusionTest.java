@@ -0,0 +1,124 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the antichain search of {@link LanguageInclusion} with the
+ * unpruned subset construction and with all short words on random pairs
+ * of small automata. Half of the larger automata extend the smaller one,
+ * so the inclusion holds often enough to be tested as well.
+ */
+class LanguageInclusionTest {
+    private static final int PAIRS = 500;
+    private static final int MAX_LENGTH = 7;
+    private static final String SYMBOLS = "ab" + LambdaNFA.LAMBDA_SYMBOL;
+
+    @Test
+    void antichainsAgreeWithSubsetsAndShortWords() {
+        Random random = new Random(19);
+        List<String> words = words();
+        for (int k = 0; k < PAIRS; k++) {
+            int n = 1 + random.nextInt(5);
+            int m = 1 + random.nextInt(5);
+            List<int[]> transitions = transitions(n, random);
+            List<Integer> finals = finals(n, random);
+            LambdaNFA smaller = automaton(n, transitions, finals);
+            LambdaNFA larger;
+            if (k % 2 == 0) {
+                transitions.addAll(transitions(n, random));
+                finals.addAll(finals(n, random));
+                larger = automaton(n, transitions, finals);
+            } else {
+                larger = automaton(m, transitions(m, random),
+                        finals(m, random));
+            }
+
+            String counterexample = larger.inclusionCounterexample(smaller);
+            String expected =
+                    LanguageInclusion.counterexampleBySubsets(smaller, larger);
+            String shortest = null;
+            for (String word : words) {
+                if (smaller.isElement(word) && !larger.isElement(word)) {
+                    shortest = word;
+                    break;
+                }
+            }
+            String message = smaller + "in\n" + larger;
+            if (k % 2 == 0) {
+                assertNull(counterexample, message);
+            }
+            if (expected == null) {
+                assertNull(counterexample, message);
+                assertNull(shortest, message);
+                assertTrue(larger.includes(smaller), message);
+                continue;
+            }
+            assertNotNull(counterexample, message);
+            assertTrue(smaller.isElement(counterexample), message);
+            assertFalse(larger.isElement(counterexample), message);
+            assertEquals(expected.length(), counterexample.length(), message);
+            if (shortest != null) {
+                assertEquals(shortest.length(), counterexample.length(),
+                        message);
+            } else {
+                assertTrue(counterexample.length() > MAX_LENGTH, message);
+            }
+        }
+    }
+
+    private static List<int[]> transitions(int n, Random random) {
+        List<int[]> transitions = new ArrayList<>();
+        for (int i = random.nextInt(3 * n + 1); i > 0; i--) {
+            transitions.add(new int[]{1 + random.nextInt(n),
+                    1 + random.nextInt(n),
+                    SYMBOLS.charAt(random.nextInt(SYMBOLS.length()))});
+        }
+        return transitions;
+    }
+
+    private static List<Integer> finals(int n, Random random) {
+        List<Integer> finals = new ArrayList<>();
+        for (int s = 1; s <= n; s++) {
+            if (random.nextInt(3) == 0) {
+                finals.add(s);
+            }
+        }
+        return finals;
+    }
+
+    /**
+     * Builds an automaton with starting state {@code 1}, so a smaller
+     * automaton and its extension start alike.
+     */
+    private static LambdaNFA automaton(int n, List<int[]> transitions,
+                                       List<Integer> finals) {
+        LambdaNFA nfa = new LambdaNFA(n, 1, finals);
+        for (int[] t : transitions) {
+            nfa.addTransition(t[0], t[1], (char) t[2]);
+        }
+        return nfa;
+    }
+
+    /**
+     * Lists all words over {@code a} and {@code b} up to
+     * {@value #MAX_LENGTH} symbols, shortest first.
+     */
+    private static List<String> words() {
+        List<String> words = new ArrayList<>(List.of(""));
+        for (int i = 0; words.get(i).length() < MAX_LENGTH; i++) {
+            words.add(words.get(i) + "a");
+            words.add(words.get(i) + "b");
+        }
+        return words;
+    }
+}
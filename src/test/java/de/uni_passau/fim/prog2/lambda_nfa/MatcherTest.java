@@ -0,0 +1,78 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests the whole-word queries of {@link Matcher}: they have to agree with
+ * {@link LambdaNFA} and, once warmed up, must not allocate.
+ */
+class MatcherTest {
+    private static final int STATES = 32;
+    private static final int WARMUP = 10_000;
+    private static final int QUERIES = 2_000;
+
+    @Test
+    void queriesAgreeWithAutomaton() {
+        LambdaNFA nfa = automaton();
+        Matcher matcher = nfa.matcher();
+        for (String word : List.of("", "a", "ab", "ba", "aab", "ab".repeat(50),
+                "a".repeat(STATES - 1), "a".repeat(STATES))) {
+            assertEquals(nfa.isElement(word), matcher.matches(word), word);
+            assertEquals(nfa.longestPrefix(word), matcher.longestPrefix(word),
+                    word);
+        }
+    }
+
+    @Test
+    void warmQueriesDoNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean()
+                instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean)
+                        ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Matcher matcher = automaton().matcher();
+        String word = "ab".repeat(STATES);
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += query(matcher, word);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < QUERIES; i++) {
+            sink += query(matcher, word);
+        }
+        long after = threads.getCurrentThreadAllocatedBytes();
+        assertEquals(0, after - before, "Bytes allocated by " + QUERIES
+                + " queries");
+        assertTrue(sink > 0);
+    }
+
+    private static long query(Matcher matcher, String word) {
+        return matcher.longestPrefixLength(word)
+                + (matcher.matches(word) ? 1 : 0);
+    }
+
+    /**
+     * Builds a chain over {@code a} with a {@code b} loop on every state and
+     * a lambda transition back to the start, so queries keep many states
+     * active and follow lambda closures.
+     */
+    private static LambdaNFA automaton() {
+        LambdaNFA nfa = new LambdaNFA(STATES, 1, List.of(STATES));
+        for (int i = 1; i < STATES; i++) {
+            nfa.addTransition(i, i + 1, 'a');
+            nfa.addTransition(i, i, 'b');
+            nfa.addTransition(i, 1, LambdaNFA.LAMBDA_SYMBOL);
+        }
+        return nfa;
+    }
+}
@@ -0,0 +1,104 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the batches of {@link SharedPrefixBatch} with
+ * {@link LambdaNFA#longestPrefix(String)} on single words. The batches
+ * contain duplicate words, the empty word, words which are prefixes of
+ * each other, and subtrees below a symbol without transitions, where the
+ * walk cuts off all deeper words.
+ */
+class SharedPrefixBatchTest {
+    private static final int AUTOMATA = 300;
+    private static final int WORDS = 40;
+    private static final String SYMBOLS = "ab" + LambdaNFA.LAMBDA_SYMBOL;
+
+    @Test
+    void batchesAgreeWithSingleQueries() {
+        Random random = new Random(17);
+        for (int k = 0; k < AUTOMATA; k++) {
+            int n = 1 + random.nextInt(8);
+            LambdaNFA nfa = new LambdaNFA(n, 1 + random.nextInt(n),
+                    List.of(1 + random.nextInt(n), 1 + random.nextInt(n)));
+            for (int i = random.nextInt(3 * n + 2); i > 0; i--) {
+                nfa.addTransition(1 + random.nextInt(n),
+                        1 + random.nextInt(n),
+                        SYMBOLS.charAt(random.nextInt(SYMBOLS.length())));
+            }
+            assertBatch(nfa, words(random));
+        }
+    }
+
+    @Test
+    void deadSubtreesAreCutOff() {
+        LambdaNFA nfa = new LambdaNFA(3, 1, List.of(1, 3));
+        nfa.addTransition(1, 2, 'a');
+        nfa.addTransition(2, 3, 'b');
+        nfa.addTransition(3, 1, LambdaNFA.LAMBDA_SYMBOL);
+        List<String> words = List.of("ababab", "abab", "ab", "", "ab", "abc",
+                "abcab", "abcabab", "abac", "aba", "c", "cab", "ababab");
+        assertBatch(nfa, words);
+        assertArrayEquals(new String[]{"ababab", "abab", "ab", "", "ab", "ab",
+                "ab", "ab", "ab", "ab", "", "", "ababab"},
+                nfa.longestPrefixAllShared(words));
+    }
+
+    private static void assertBatch(LambdaNFA nfa, List<String> words) {
+        String[] prefixes = nfa.longestPrefixAllShared(words);
+        boolean[] elements = nfa.isElementAllShared(words);
+        assertEquals(words.size(), prefixes.length);
+        for (int i = 0; i < words.size(); i++) {
+            String message = nfa + "word " + words.get(i) + " of " + words;
+            assertEquals(nfa.longestPrefix(words.get(i)), prefixes[i],
+                    message);
+            assertEquals(nfa.isElement(words.get(i)), elements[i], message);
+        }
+    }
+
+    /**
+     * Generates words over {@code a} and {@code b}, and adds duplicates,
+     * prefixes and extensions of them, partly below {@code c}, which has no
+     * transitions.
+     */
+    private static List<String> words(Random random) {
+        List<String> words = new ArrayList<>(List.of(""));
+        for (int i = 0; i < WORDS; i++) {
+            String word;
+            if (i < WORDS / 4) {
+                StringBuilder sb = new StringBuilder();
+                for (int j = random.nextInt(10); j > 0; j--) {
+                    sb.append(random.nextBoolean() ? 'a' : 'b');
+                }
+                word = sb.toString();
+            } else {
+                String other = words.get(random.nextInt(words.size()));
+                switch (random.nextInt(4)) {
+                    case 0:
+                        word = other;
+                        break;
+                    case 1:
+                        word = other.substring(0,
+                                random.nextInt(other.length() + 1));
+                        break;
+                    case 2:
+                        word = other + "c" + other;
+                        break;
+                    default:
+                        word = other + (random.nextBoolean() ? "a" : "ba");
+                }
+            }
+            words.add(word);
+        }
+        Collections.shuffle(words, random);
+        return words;
+    }
+}
@@ -0,0 +1,134 @@
+package de.uni_passau.fim.prog2.lambda_nfa;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the matches {@link TextScan} finds in both modes with a brute
+ * force search deciding the element problem for every span of the text.
+ * The scan runs on the states of {@link LambdaNFA} and on the rows of a
+ * {@link ConcurrentLambdaNFA} snapshot.
+ */
+class TextScanTest {
+    private static final int AUTOMATA = 300;
+    private static final int TEXTS = 20;
+    private static final String SYMBOLS = "abc" + LambdaNFA.LAMBDA_SYMBOL;
+
+    @Test
+    void matchesAgreeWithBruteForce() {
+        Random random = new Random(16);
+        for (int k = 0; k < AUTOMATA; k++) {
+            int n = 1 + random.nextInt(6);
+            int start = 1 + random.nextInt(n);
+            List<Integer> finals = List.of(1 + random.nextInt(n),
+                    1 + random.nextInt(n));
+            LambdaNFA nfa = new LambdaNFA(n, start, finals);
+            ConcurrentLambdaNFA concurrent =
+                    new ConcurrentLambdaNFA(n, start, finals);
+            for (int i = random.nextInt(3 * n + 2); i > 0; i--) {
+                int source = 1 + random.nextInt(n);
+                int target = 1 + random.nextInt(n);
+                char symbol = SYMBOLS.charAt(random.nextInt(SYMBOLS.length()));
+                nfa.addTransition(source, target, symbol);
+                concurrent.addTransition(source, target, symbol);
+            }
+            for (int t = 0; t < TEXTS; t++) {
+                StringBuilder text = new StringBuilder();
+                for (int i = random.nextInt(16); i > 0; i--) {
+                    text.append(
+                            SYMBOLS.charAt(random.nextInt(SYMBOLS.length())));
+                }
+                assertScans(nfa, concurrent, text.toString());
+            }
+        }
+    }
+
+    /**
+     * The language of {@code a} and all words {@code a...ab}, the worst case
+     * of {@link Match.Mode#NON_OVERLAPPING}: every match in {@code aaa...a}
+     * is only final at the end of the text.
+     */
+    @Test
+    void quadraticCaseIsCorrect() {
+        LambdaNFA nfa = new LambdaNFA(3, 1, List.of(2));
+        ConcurrentLambdaNFA concurrent =
+                new ConcurrentLambdaNFA(3, 1, List.of(2));
+        int[][] transitions = {{1, 2, 'a'}, {1, 3, 'a'}, {3, 3, 'a'},
+                {3, 2, 'b'}};
+        for (int[] t : transitions) {
+            nfa.addTransition(t[0], t[1], (char) t[2]);
+            concurrent.addTransition(t[0], t[1], (char) t[2]);
+        }
+        String text = "a".repeat(50);
+        List<Match> singles = new ArrayList<>();
+        for (int i = 0; i < text.length(); i++) {
+            singles.add(new Match(i, i + 1));
+        }
+        assertEquals(singles, nfa.findAll(text, Match.Mode.NON_OVERLAPPING));
+        assertEquals(singles, nfa.findAll(text, Match.Mode.ALL));
+        assertEquals(List.of(new Match(0, 51)),
+                nfa.findAll(text + "b", Match.Mode.NON_OVERLAPPING));
+        for (String variant : List.of(text, text + "b", "b" + text + "ba",
+                "aab" + LambdaNFA.LAMBDA_SYMBOL + "ab")) {
+            assertScans(nfa, concurrent, variant);
+        }
+    }
+
+    private static void assertScans(LambdaNFA nfa,
+                                    ConcurrentLambdaNFA concurrent,
+                                    String text) {
+        List<Match> all = allMatches(nfa, text);
+        List<Match> nonOverlapping = nonOverlappingMatches(nfa, text);
+        String message = nfa + "text " + text;
+        assertEquals(all, nfa.findAll(text, Match.Mode.ALL), message);
+        assertEquals(all, concurrent.findAll(text, Match.Mode.ALL), message);
+        assertEquals(nonOverlapping,
+                nfa.findAll(text, Match.Mode.NON_OVERLAPPING), message);
+        assertEquals(nonOverlapping,
+                concurrent.findAll(text, Match.Mode.NON_OVERLAPPING), message);
+    }
+
+    /**
+     * For every end index, the non-empty match starting leftmost.
+     */
+    private static List<Match> allMatches(LambdaNFA nfa, String text) {
+        List<Match> matches = new ArrayList<>();
+        for (int end = 1; end <= text.length(); end++) {
+            for (int start = 0; start < end; start++) {
+                if (nfa.isElement(text.substring(start, end))) {
+                    matches.add(new Match(start, end));
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Leftmost-longest non-empty matches, continuing after the end of every
+     * match.
+     */
+    private static List<Match> nonOverlappingMatches(LambdaNFA nfa,
+                                                     String text) {
+        List<Match> matches = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.length();
+            while (end > start && !nfa.isElement(text.substring(start, end))) {
+                --end;
+            }
+            if (end > start) {
+                matches.add(new Match(start, end));
+                start = end;
+            } else {
+                ++start;
+            }
+        }
+        return matches;
+    }
+}